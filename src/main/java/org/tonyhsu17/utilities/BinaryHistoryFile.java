@@ -0,0 +1,246 @@
+package org.tonyhsu17.utilities;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+
+
+/**
+ * Binary history file with a persisted fingerprint table for lookups without loading entries.
+ * <p>
+ * Layout, all values big-endian:
+ * <pre>
+ * header  magic 0x89 'H' 'L' 'B', int version, int entry count, int table slots, long table offset
+ * entries int length followed by UTF-8 bytes, oldest first
+ * table   slots of (long fingerprint, long entry offset), open addressing with linear probing
+ * </pre>
+ * The table holds the first occurrence of every distinct entry and is at most half full. A
+ * fingerprint of 0 marks an empty slot. The magic starts with a byte that is never valid UTF-8, so
+ * a text log can not be mistaken for a binary one.
+ *
+ * @author Tony Hsu
+ */
+final class BinaryHistoryFile {
+    private static final byte[] MAGIC = {(byte)0x89, 'H', 'L', 'B'};
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int SLOT_SIZE = 16;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int slots;
+    private final int tableOffset;
+
+    private BinaryHistoryFile(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if(buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported history file version: " + buffer.getInt(4));
+        }
+        size = buffer.getInt(8);
+        slots = buffer.getInt(12);
+        tableOffset = (int)buffer.getLong(16);
+    }
+
+    /**
+     * @param file File to check
+     * @return True if file exists and starts with the binary magic
+     * @throws IOException
+     */
+    static boolean isBinary(Path file) throws IOException {
+        if(!Files.exists(file)) {
+            return false;
+        }
+        try (InputStream is = Files.newInputStream(file)) {
+            for(byte b : MAGIC) {
+                if(is.read() != (b & 0xFF)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Maps a binary file read-only.
+     *
+     * @param file Binary history file
+     * @return Opened file, null if it is too large to map
+     * @throws IOException
+     */
+    static BinaryHistoryFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            return new BinaryHistoryFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Streams every entry of a binary file without mapping it.
+     *
+     * @param file    Binary history file
+     * @param handler Called for each entry in order
+     * @throws IOException
+     */
+    static void read(Path file, Consumer<String> handler) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            int count = readHeader(dis);
+            byte[] bytes = new byte[256];
+            for(int i = 0; i < count; i++) {
+                int length = dis.readInt();
+                if(length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                dis.readFully(bytes, 0, length);
+                handler.accept(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Reads the header of a stream positioned at the start of a binary file, leaving it at the
+     * first entry.
+     *
+     * @param dis Stream over a binary history file
+     * @return Number of entries
+     * @throws IOException
+     */
+    static int readHeader(DataInputStream dis) throws IOException {
+        dis.skipBytes(4);
+        int version = dis.readInt();
+        if(version != VERSION) {
+            throw new IOException("Unsupported history file version: " + version);
+        }
+        int count = dis.readInt();
+        dis.skipBytes(HEADER_SIZE - 12);
+        return count;
+    }
+
+    /**
+     * Writes entries in binary format. The stream is flushed but not closed.
+     *
+     * @param fos     Stream positioned at the start of an empty file
+     * @param entries Every entry in order
+     * @throws IOException
+     */
+    static void write(FileOutputStream fos, Collection<String> entries) throws IOException {
+        int count = entries.size();
+        int slots = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+        long[] fingerprints = new long[slots];
+        long[] offsets = new long[slots];
+        String[] keys = new String[slots]; // resolves fingerprint collisions while writing
+        long offset = HEADER_SIZE;
+
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16));
+        dos.write(new byte[HEADER_SIZE]); // filled in once the table offset is known
+        for(String entry : entries) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            long fingerprint = Fingerprint.of(entry);
+            int slot = (int)fingerprint & (slots - 1);
+            while(fingerprints[slot] != 0 && !(fingerprints[slot] == fingerprint && keys[slot].equals(entry))) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            if(fingerprints[slot] == 0) {
+                fingerprints[slot] = fingerprint;
+                offsets[slot] = offset;
+                keys[slot] = entry;
+            }
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+            offset += 4 + bytes.length;
+        }
+        for(int i = 0; i < slots; i++) {
+            dos.writeLong(fingerprints[i]);
+            dos.writeLong(offsets[i]);
+        }
+        dos.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putInt(VERSION).putInt(count).putInt(slots).putLong(offset);
+        header.flip();
+        fos.getChannel().write(header, 0);
+    }
+
+    /**
+     * @return Number of entries including repeats
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Looks up an entry in the mapped table. Only allocates when the fingerprint matches.
+     *
+     * @param key Entry to find
+     * @return True if key is in the file
+     */
+    boolean contains(String key) {
+        return contains(key, Fingerprint.of(key));
+    }
+
+    /**
+     * @param key         Entry to find, compared by content
+     * @param fingerprint {@link Fingerprint} of key
+     * @return True if key is in the file
+     */
+    boolean contains(CharSequence key, long fingerprint) {
+        int slot = (int)fingerprint & (slots - 1);
+        while(true) {
+            int position = tableOffset + slot * SLOT_SIZE;
+            long stored = buffer.getLong(position);
+            if(stored == 0) {
+                return false;
+            }
+            if(stored == fingerprint && entryAt((int)buffer.getLong(position + 8)).contentEquals(key)) {
+                return true;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+    }
+
+    /**
+     * Decodes every entry from the mapping.
+     *
+     * @param handler Called for each entry in order
+     */
+    void forEach(Consumer<String> handler) {
+        int position = HEADER_SIZE;
+        for(int i = 0; i < size; i++) {
+            String entry = entryAt(position);
+            position += 4 + buffer.getInt(position);
+            handler.accept(entry);
+        }
+    }
+
+    /**
+     * Reads fingerprints straight from the table, one per distinct entry.
+     *
+     * @param handler Called for each fingerprint
+     */
+    void forEachFingerprint(LongConsumer handler) {
+        for(int slot = 0; slot < slots; slot++) {
+            long fingerprint = buffer.getLong(tableOffset + slot * SLOT_SIZE);
+            if(fingerprint != 0) {
+                handler.accept(fingerprint);
+            }
+        }
+    }
+
+    private String entryAt(int position) {
+        ByteBuffer view = buffer.duplicate();
+        int length = view.getInt(position);
+        byte[] bytes = new byte[length];
+        view.position(position + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,254 @@
+package org.tonyhsu17.utilities;
+
+import org.tonyhsu17.utilities.checksum.ChecksumEngine;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+
+/**
+ * Manages persistent (file-based) cache of CRC32 values keyed on file path.
+ * A cached value is only returned while the file's size and last modified time still match,
+ * otherwise the file is checksummed again and the entry replaced.
+ * <p>
+ * Cache file is a compact binary list of (path, size, lastModified, crc) records.
+ * Least recently used entries are dropped once maxEntries is reached.
+ *
+ * @author Tony Hsu
+ */
+public class ChecksumCache implements Logger {
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+    public static final String DEFAULT_CACHE_NAME = ".crc.cache";
+    private static final int MAGIC = 0x43524343; // "CRCC"
+    private static final int VERSION = 1;
+    private String cacheName; // cache name
+    private String cachePath; // path of cache
+    private int maxEntries; // max number of entries
+    private LinkedHashMap<String, CacheEntry> entries;
+    private ChecksumEngine engine;
+    private boolean dirty;
+
+    /**
+     * Single cached record.
+     */
+    private static class CacheEntry {
+        final long size;
+        final long lastModified;
+        final int crc;
+
+        CacheEntry(long size, long lastModified, int crc) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.crc = crc;
+        }
+    }
+
+    /**
+     * Initializes and reads in cache file.
+     *
+     * @param srcPath Directory to store/read cache file
+     * @throws IOException
+     */
+    public ChecksumCache(String srcPath) throws IOException {
+        this(srcPath, DEFAULT_CACHE_NAME, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Initializes and reads in cache file.
+     *
+     * @param srcPath   Directory to store/read cache file
+     * @param cacheName Name of cache
+     * @throws IOException
+     */
+    public ChecksumCache(String srcPath, String cacheName) throws IOException {
+        this(srcPath, cacheName, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Initializes and reads in cache file.
+     *
+     * @param srcPath    Directory to store/read cache file
+     * @param cacheName  Name of cache
+     * @param maxEntries Max entries to keep in memory and on disk
+     * @throws IOException
+     */
+    public ChecksumCache(String srcPath, String cacheName, int maxEntries) throws IOException {
+        this.cacheName = cacheName;
+        this.maxEntries = maxEntries;
+        // append file separator if not found in srcPath
+        cachePath = srcPath + (srcPath.endsWith(File.separator) ? "" : File.separator) + cacheName;
+        engine = new ChecksumEngine();
+        // access ordered for LRU eviction
+        entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > ChecksumCache.this.maxEntries;
+            }
+        };
+        readInFile();
+    }
+
+    /**
+     * Read in cache file. Stops at the first unreadable record, keeping what was read so far.
+     *
+     * @throws IOException
+     */
+    private void readInFile() throws IOException {
+        File file = new File(cachePath);
+        if(!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                error("Ignoring unrecognized cache file: " + cachePath);
+                return;
+            }
+            int count = in.readInt();
+            for(int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                entries.put(path, new CacheEntry(in.readLong(), in.readLong(), in.readInt()));
+            }
+        }
+        catch (EOFException e) {
+            error("Truncated cache file: " + cachePath);
+        }
+    }
+
+    /**
+     * Override engine used to checksum files on a cache miss.
+     *
+     * @param engine {@link ChecksumEngine}
+     * @return
+     */
+    public ChecksumCache setEngine(ChecksumEngine engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    /**
+     * Returns the CRC32 value of a file, using the cached value if the file has not changed.
+     *
+     * @param file File to compute the CRC value
+     * @return CRC value as unsigned 32 bit value
+     * @throws IOException
+     */
+    public long getCRC32(File file) throws IOException {
+        String key = toKey(file);
+        long size = file.length();
+        long lastModified = file.lastModified();
+        synchronized(this) {
+            CacheEntry entry = entries.get(key);
+            if(entry != null && entry.size == size && entry.lastModified == lastModified) {
+                return entry.crc & 0xffffffffL;
+            }
+        }
+        // compute outside lock so other files can be served meanwhile
+        long crc = engine.crc32(file);
+        synchronized(this) {
+            entries.put(key, new CacheEntry(size, lastModified, (int)crc));
+            dirty = true;
+        }
+        return crc;
+    }
+
+    /**
+     * Checks if an up to date value is cached for the file.
+     *
+     * @param file File to check
+     * @return True if cached and size/last modified time still match
+     */
+    public synchronized boolean isCached(File file) {
+        CacheEntry entry = entries.get(toKey(file));
+        return entry != null && entry.size == file.length() && entry.lastModified == file.lastModified();
+    }
+
+    /**
+     * Removes cached value of a file.
+     *
+     * @param file File to forget
+     * @return True if an entry was removed
+     */
+    public synchronized boolean invalidate(File file) {
+        boolean removed = entries.remove(toKey(file)) != null;
+        dirty |= removed;
+        return removed;
+    }
+
+    /**
+     * Removes all cached values.
+     */
+    public synchronized void invalidateAll() {
+        dirty |= !entries.isEmpty();
+        entries.clear();
+    }
+
+    /**
+     * @return Number of cached entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Write cache to file if anything changed. Written and synced to a temporary file first and then
+     * atomically moved over the old cache so a failed save or crash never leaves a half written
+     * cache behind.
+     *
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        if(!dirty) {
+            return;
+        }
+        Path target = Paths.get(cachePath);
+        Path temp = Paths.get(cachePath + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            // iteration order is least to most recently used, preserved on reload
+            for(Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().size);
+                out.writeLong(e.getValue().lastModified);
+                out.writeInt(e.getValue().crc);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileUtils.syncDirectory(target);
+        dirty = false;
+    }
+
+    /**
+     * Returns the file name of the cache.
+     *
+     * @return
+     */
+    public String getName() {
+        return cacheName;
+    }
+
+    /**
+     * Returns the file path of the cache.
+     *
+     * @return
+     */
+    public String getPath() {
+        return cachePath;
+    }
+
+    private static String toKey(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+}
@@ -0,0 +1,161 @@
+package org.tonyhsu17.utilities;
+
+/**
+ * Reusable view of a string followed by its modifiers, compared and hashed as if concatenated
+ * without building the concatenated String.
+ * <p>
+ * {@link #stringHash()} equals the {@link String#hashCode()} of the concatenation and is updated as
+ * modifiers are appended. String and char modifiers are copied into an internal buffer and
+ * integral modifiers are written as decimal digits, so lookups allocate nothing once the buffer has grown
+ * to fit. Not thread-safe, each owner keeps one instance per lock.
+ *
+ * @author Tony Hsu
+ */
+final class CompositeKey implements CharSequence {
+    private String str;
+    private char[] suffix = new char[32];
+    private int suffixLength;
+    private int hash;
+
+    /**
+     * Starts a new key.
+     *
+     * @param str Leading string
+     * @return
+     */
+    CompositeKey set(String str) {
+        this.str = str;
+        suffixLength = 0;
+        hash = str.hashCode();
+        return this;
+    }
+
+    CompositeKey append(String modifier) {
+        int length = modifier.length();
+        ensureCapacity(length);
+        modifier.getChars(0, length, suffix, suffixLength);
+        updateHash(suffixLength, length);
+        suffixLength += length;
+        return this;
+    }
+
+    CompositeKey append(char modifier) {
+        ensureCapacity(1);
+        suffix[suffixLength] = modifier;
+        updateHash(suffixLength, 1);
+        suffixLength++;
+        return this;
+    }
+
+    /**
+     * Appends value in the same form as {@link Long#toString(long)}.
+     */
+    CompositeKey append(long value) {
+        ensureCapacity(20);
+        int start = suffixLength;
+        if(value < 0) {
+            suffix[suffixLength++] = '-';
+        }
+        else {
+            value = -value; // negative range also holds Long.MIN_VALUE
+        }
+        int digits = suffixLength;
+        do {
+            suffix[suffixLength++] = (char)('0' - (value % 10));
+            value /= 10;
+        } while(value != 0);
+        for(int i = digits, j = suffixLength - 1; i < j; i++, j--) {
+            char c = suffix[i];
+            suffix[i] = suffix[j];
+            suffix[j] = c;
+        }
+        updateHash(start, suffixLength - start);
+        return this;
+    }
+
+    /**
+     * Appends each modifier in the same form as {@link Object#toString()}. Only modifiers other
+     * than strings, chars and integral numbers allocate.
+     */
+    CompositeKey append(Object... modifiers) {
+        for(Object modifier : modifiers) {
+            if(modifier instanceof String) {
+                append((String)modifier);
+            }
+            else if(modifier instanceof Long || modifier instanceof Integer || modifier instanceof Short || modifier instanceof Byte) {
+                append(((Number)modifier).longValue());
+            }
+            else if(modifier instanceof Character) {
+                append(((Character)modifier).charValue());
+            }
+            else {
+                append(modifier.toString());
+            }
+        }
+        return this;
+    }
+
+    private void ensureCapacity(int extra) {
+        if(suffixLength + extra > suffix.length) {
+            char[] grown = new char[Math.max(suffix.length * 2, suffixLength + extra)];
+            System.arraycopy(suffix, 0, grown, 0, suffixLength);
+            suffix = grown;
+        }
+    }
+
+    private void updateHash(int start, int length) {
+        int h = hash;
+        for(int i = start; i < start + length; i++) {
+            h = 31 * h + suffix[i];
+        }
+        hash = h;
+    }
+
+    @Override
+    public int length() {
+        return str.length() + suffixLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        int length = str.length();
+        return index < length ? str.charAt(index) : suffix[index - length];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    /**
+     * @param key Stored entry
+     * @return True if key equals the concatenation
+     */
+    boolean matches(String key) {
+        int length = str.length();
+        if(key.length() != length + suffixLength || !key.startsWith(str)) {
+            return false;
+        }
+        for(int i = 0; i < suffixLength; i++) {
+            if(key.charAt(length + i) != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Same value as {@link String#hashCode()} of the concatenation
+     */
+    int stringHash() {
+        return hash;
+    }
+
+    /**
+     * @return The concatenated String, allocates
+     */
+    @Override
+    public String toString() {
+        return suffixLength == 0 ? str : str.concat(new String(suffix, 0, suffixLength));
+    }
+}
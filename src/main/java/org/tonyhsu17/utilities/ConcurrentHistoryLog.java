@@ -0,0 +1,310 @@
+package org.tonyhsu17.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+/**
+ * Thread-safe variant of {@link HistoryLog} for sharing one history across many threads.
+ * Reads and writes the same file format.
+ * <p>
+ * Membership checks are a lock-free {@link ConcurrentHashMap} lookup. Adds update the per-key
+ * occurrence count with a CAS/bin-level update and append to a lock-free FIFO queue, so writers
+ * never take a global lock. Eviction at logSize is approximate under contention: the size may
+ * briefly overshoot by the number of concurrent adders.
+ * <p>
+ * {@link #remove(String, Object...)} does not search the queue. It decrements the count and leaves a
+ * tombstone, and the oldest matching queue entry is discarded when it reaches the head. Removal
+ * and eviction update the count and tombstone of a key inside one atomic update of its count, so
+ * each queued occurrence is accounted for exactly once.
+ *
+ * @author Tony Hsu
+ */
+public class ConcurrentHistoryLog implements Logger {
+    private String logName; // log name
+    private String logPath; // path of log
+    private int logSize; // max number of entries
+    private boolean allowDups;
+    private ConcurrentHashMap<String, Integer> counts; // live occurrences per entry
+    private ConcurrentHashMap<String, Integer> tombstones; // removed occurrences still in queue
+    private ConcurrentLinkedQueue<String> queue; // FIFO order, may contain removed entries
+    private AtomicInteger size; // live entries
+    private HistoryJournal journal;
+    private final Object saveLock = new Object();
+
+    /**
+     * Initializes and reads in log file.
+     *
+     * @param srcPath Directory to store/read log file
+     * @throws IOException
+     */
+    public ConcurrentHistoryLog(String srcPath) throws IOException {
+        this(srcPath, HistoryLog.DEFAULT_LOG_NAME, HistoryLog.DEFAULT_MAX_LOG_LENGTH, HistoryLog.DEFAULT_ALLOW_DUPS);
+    }
+
+    /**
+     * Initializes and reads in log file.
+     *
+     * @param srcPath Directory to store/read log file
+     * @param logName Name of log
+     * @throws IOException
+     */
+    public ConcurrentHistoryLog(String srcPath, String logName) throws IOException {
+        this(srcPath, logName, HistoryLog.DEFAULT_MAX_LOG_LENGTH, HistoryLog.DEFAULT_ALLOW_DUPS);
+    }
+
+    /**
+     * Initializes and reads in log file.
+     *
+     * @param srcPath   Directory to store/read log file
+     * @param logName   Name of log
+     * @param logSize   Max entry size to store
+     * @param allowDups allow same entries to be added
+     * @throws IOException
+     */
+    public ConcurrentHistoryLog(String srcPath, String logName, int logSize, boolean allowDups) throws IOException {
+        this.logName = logName;
+        this.logSize = logSize;
+        this.allowDups = allowDups;
+        // append file separator if not found in srcPath
+        logPath = srcPath + (srcPath.endsWith(File.separator) ? "" : File.separator) + logName;
+        counts = new ConcurrentHashMap<>(Math.min(logSize, 1 << 16));
+        tombstones = new ConcurrentHashMap<>();
+        queue = new ConcurrentLinkedQueue<>();
+        size = new AtomicInteger();
+        journal = new HistoryJournal(logPath, Charset.forName("UTF-8"));
+        readInFile();
+    }
+
+    /**
+     * Read in log file using a single-threaded {@link HistoryIndex} then publish the result.
+     *
+     * @throws IOException
+     */
+    private void readInFile() throws IOException {
+        HistoryIndex loaded = new HistoryIndex(0);
+        journal.recover();
+        journal.readSnapshot(loaded::add);
+        journal.replay((op, entry) -> {
+            if(op == HistoryJournal.ADD) {
+                loaded.add(entry);
+            }
+            else {
+                loaded.remove(entry);
+            }
+        });
+        while(loaded.size() > logSize) {
+            loaded.removeOldest();
+        }
+        for(String entry : loaded.asList()) {
+            queue.add(entry);
+            counts.merge(entry, 1, Integer::sum);
+        }
+        size.set(loaded.size());
+    }
+
+    public void add(String str) {
+        add(str, "");
+    }
+
+    /**
+     * Queue string to be written to file. Safe to call from any thread.
+     *
+     * @param str      String to write
+     * @param modifier Extra value to add to string
+     */
+    public void add(String str, String modifier) {
+        String entry = str + modifier;
+        if(allowDups) {
+            counts.merge(entry, 1, Integer::sum);
+        }
+        else if(counts.putIfAbsent(entry, 1) != null) {
+            return;
+        }
+        queue.offer(entry);
+        if(size.incrementAndGet() > logSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Evicts oldest entries until size is back at logSize, skipping removed entries.
+     */
+    private void evict() {
+        while(size.get() > logSize) {
+            String oldest = queue.poll();
+            if(oldest == null) {
+                return;
+            }
+            boolean[] evicted = new boolean[1];
+            counts.compute(oldest, (k, v) -> {
+                if(consume(tombstones, k)) {
+                    return v; // already removed and counted
+                }
+                if(v == null) {
+                    return null;
+                }
+                evicted[0] = true;
+                return v > 1 ? v - 1 : null;
+            });
+            if(evicted[0]) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Decrements the count of key, dropping it at zero.
+     *
+     * @return True if key had a positive count
+     */
+    private static boolean consume(ConcurrentHashMap<String, Integer> map, String key) {
+        boolean[] consumed = new boolean[1];
+        map.computeIfPresent(key, (k, v) -> {
+            consumed[0] = true;
+            return v > 1 ? v - 1 : null;
+        });
+        return consumed[0];
+    }
+
+    /**
+     * Checks if string is in history. Lock-free.
+     *
+     * @param str String to check
+     * @return True if string found in history
+     */
+    public boolean contains(String str) {
+        return counts.containsKey(str);
+    }
+
+    /**
+     * Checks if string is in history. Lock-free.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean contains(String str, String modifier) {
+        return counts.containsKey(str + modifier);
+    }
+
+    /**
+     * Checks if string is in history. Lock-free.
+     *
+     * @param str       String to check
+     * @param modifiers Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean contains(String str, Object... modifiers) {
+        return isInHistory(str, modifiers);
+    }
+
+    /**
+     * Checks if string is in history. Lock-free.
+     *
+     * @param str       String to check
+     * @param modifiers Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean isInHistory(String str, Object... modifiers) {
+        return counts.containsKey(HistoryLog.toKey(str, modifiers));
+    }
+
+    /**
+     * Removes oldest occurrence of specified string from history list
+     *
+     * @param str       String to check
+     * @param modifiers Extra value to add string
+     * @return True if string found in history and removed
+     */
+    public boolean remove(String str, Object... modifiers) {
+        String key = HistoryLog.toKey(str, modifiers);
+        boolean[] removed = new boolean[1];
+        counts.computeIfPresent(key, (k, v) -> {
+            // tombstone is visible before another thread can evict this occurrence
+            tombstones.merge(k, 1, Integer::sum);
+            removed[0] = true;
+            return v > 1 ? v - 1 : null;
+        });
+        if(!removed[0]) {
+            return false;
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return Number of entries currently in history
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Write history to file. Writers are not blocked, entries added while saving may or may not be
+     * included. Concurrent saves are serialized.
+     *
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        synchronized(saveLock) {
+            journal.rotate();
+            journal.writeSnapshot(getSavedList());
+        }
+    }
+
+    /**
+     * Returns the file name of the log.
+     *
+     * @return
+     */
+    public String getName() {
+        return logName;
+    }
+
+    /**
+     * Returns the file path of the log.
+     *
+     * @return
+     */
+    public String getPath() {
+        return logPath;
+    }
+
+    /**
+     * Returns a copy of values, oldest first, taken without blocking writers. Removal and eviction
+     * always take the oldest occurrences, so the queue is walked newest first and each entry is
+     * emitted at most as many times as its live count. Tombstones are not used here since eviction
+     * consumes them while the queue is being walked.
+     *
+     * @return
+     */
+    public List<String> getSavedList() {
+        Object[] order = queue.toArray();
+        Map<String, Integer> remaining = new HashMap<>();
+        List<String> snapshot = new ArrayList<>(Math.min(order.length, logSize));
+        for(int i = order.length - 1; i >= 0; i--) {
+            String entry = (String)order[i];
+            Integer left = remaining.get(entry);
+            if(left == null) {
+                left = counts.getOrDefault(entry, 0);
+            }
+            if(left > 0) {
+                snapshot.add(entry);
+            }
+            remaining.put(entry, left - 1);
+        }
+        Collections.reverse(snapshot);
+        return snapshot;
+    }
+}
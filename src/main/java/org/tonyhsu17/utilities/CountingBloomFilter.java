@@ -0,0 +1,98 @@
+package org.tonyhsu17.utilities;
+
+/**
+ * Counting Bloom filter over {@link Fingerprint} values, used in front of {@link HistoryIndex}.
+ * <p>
+ * Each slot is a 4-bit counter, 16 to a long, so entries can be removed again. Probe positions are
+ * derived from one 64-bit fingerprint by double hashing, so a lookup never rehashes the key. A
+ * counter that reaches 15 sticks and is never decremented, trading a slightly higher false
+ * positive rate for never returning a false negative.
+ *
+ * @author Tony Hsu
+ */
+final class CountingBloomFilter {
+    private static final int MAX_COUNT = 15;
+    private final long[] counters;
+    private final long slots;
+    private final int hashes;
+
+    /**
+     * @param expectedEntries   Number of entries the filter is sized for
+     * @param falsePositiveRate Target false positive rate at expectedEntries, between 0 and 1
+     */
+    CountingBloomFilter(int expectedEntries, double falsePositiveRate) {
+        if(falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        }
+        int n = Math.max(1, expectedEntries);
+        long m = (long)Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        slots = Math.max(64, (m + 15) / 16 * 16);
+        hashes = Math.max(1, (int)Math.round((double)slots / n * Math.log(2)));
+        counters = new long[(int)Math.min(Integer.MAX_VALUE - 8, slots / 16)];
+    }
+
+    /**
+     * @return Number of probes per lookup
+     */
+    int getHashes() {
+        return hashes;
+    }
+
+    /**
+     * @return Memory used by counters in bytes
+     */
+    long getSizeInBytes() {
+        return counters.length * 8L;
+    }
+
+    void add(long fingerprint) {
+        long h = fingerprint;
+        long step = (fingerprint >>> 32) | 1;
+        for(int i = 0; i < hashes; i++, h += step) {
+            long slot = (h & Long.MAX_VALUE) % slots;
+            int index = (int)(slot >>> 4);
+            int shift = (int)(slot & 15) << 2;
+            if(((counters[index] >>> shift) & 0xF) < MAX_COUNT) {
+                counters[index] += 1L << shift;
+            }
+        }
+    }
+
+    /**
+     * Undoes an {@link #add(long)}. Must only be called for a fingerprint that was added.
+     */
+    void remove(long fingerprint) {
+        long h = fingerprint;
+        long step = (fingerprint >>> 32) | 1;
+        for(int i = 0; i < hashes; i++, h += step) {
+            long slot = (h & Long.MAX_VALUE) % slots;
+            int index = (int)(slot >>> 4);
+            int shift = (int)(slot & 15) << 2;
+            long count = (counters[index] >>> shift) & 0xF;
+            if(count > 0 && count < MAX_COUNT) {
+                counters[index] -= 1L << shift;
+            }
+        }
+    }
+
+    /**
+     * @return False if fingerprint was definitely never added
+     */
+    boolean mightContain(long fingerprint) {
+        long h = fingerprint;
+        long step = (fingerprint >>> 32) | 1;
+        for(int i = 0; i < hashes; i++, h += step) {
+            long slot = (h & Long.MAX_VALUE) % slots;
+            if(((counters[(int)(slot >>> 4)] >>> ((int)(slot & 15) << 2)) & 0xF) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void clear() {
+        for(int i = 0; i < counters.length; i++) {
+            counters[i] = 0;
+        }
+    }
+}
@@ -1,8 +1,23 @@
 package org.tonyhsu17.utilities;
 
 
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 
 
@@ -10,20 +25,52 @@ import java.util.Hashtable;
  * Singleton class to handle passing events to other classes without any direct relations.
  * Classes publish events to EventCenter and EventCenter will distribute the events to any
  * subscribers.
- * 
+ *
  * Modeled after Notification Center on the iOS.
- * 
+ * <p>
+ * Besides the fixed {@link Events}, any class can be an event: {@link #subscribe(Class, Object, Consumer)}
+ * registers for a payload class and {@link #post(Object)} reaches subscribers of the posted
+ * object's class and of all its superclasses and interfaces. The topics a class reaches are
+ * resolved once per class and cached, so posting is a cache lookup and a loop over subscriber
+ * arrays. Topics exist only for subscribed classes, and cached tables are resolved again after a
+ * class gets its first subscriber. {@link Events} use the same topics and delivery paths, but a
+ * payload posted with an event is not dispatched by class, since unrelated events share payload
+ * classes such as String.
+ * <p>
+ * Subscribers of each topic are held in an immutable array that is replaced, never modified, when
+ * a subscriber is added or removed, so posting neither locks nor allocates. Subscribers are
+ * identified by identity, so ids with equal hash codes never replace each other.
+ * <p>
+ * {@link #enableAsync(int, int, Backpressure)} adds {@link #postEventAsync(Events, Object)}, which
+ * queues the event in a preallocated ring buffer and returns, leaving delivery to consumer
+ * threads so a slow subscriber no longer stalls the poster. {@link Backpressure} decides what
+ * happens when the buffer is full. {@link #postEvent(Events, Object)} stays synchronous.
+ * <p>
+ * {@link #setCoalescing(Events, long, TimeUnit)} collapses bursts of an event: posts within the
+ * window are held, then subscribers receive only the latest payload and subscribers registered
+ * with {@link #subscribeBatch(Events, Object, Consumer)} receive all of them as one list. Windows
+ * of every event are closed by one shared timer thread and delivered through the async consumers
+ * or mailboxes when enabled, otherwise on one shared delivery thread, so a slow subscriber never
+ * holds up the timer.
+ * <p>
+ * {@link #enableMailboxes(int, int)} replaces the async consumers with a mailbox per subscriber id:
+ * queued posts go to the mailbox of each subscriber, and a drain task per mailbox runs on a shared
+ * work-stealing pool. Each subscriber receives its events in posting order, one at a time, while
+ * a slow subscriber only delays its own mailbox. {@link #getMailboxStatistics(Object)} reports
+ * depth and drops.
+ *
  * @author Tony Hsu
- * @structure Hashtable containing events to subscribers and their function to call.
+ * @structure Topics of copy-on-write subscriber arrays, per event and per payload class, and
+ *            a cached list of topics per posted class.
  */
-public class EventCenter {
+public class EventCenter implements Logger {
     /**
      * Delegate methods for EventFunction
      */
     public interface EventFunction {
         /**
          * Generic function for function pass-in
-         * 
+         *
          * @param obj Any data
          */
         public void postEvent(Object obj);
@@ -36,21 +83,111 @@ public class EventCenter {
         SETTINGS_CHANGED, TRIGGER_AUTO_FILL
     };
 
+    /**
+     * What {@link EventCenter#postEventAsync(Events, Object)} does when the queue is full.
+     */
+    public static enum Backpressure {
+        /**
+         * Wait for a consumer to free a slot. A post from a consumer thread is delivered on that
+         * thread instead, since waiting could block the only consumer that frees a slot
+         */
+        BLOCK,
+        /**
+         * Discard the oldest queued event to make room
+         */
+        DROP_OLDEST,
+        /**
+         * Discard the posted event
+         */
+        DROP_NEWEST,
+        /**
+         * Deliver the posted event on the posting thread
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * Single background thread shared by all events for coalescing windows
+     */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "EventCenter-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    /**
+     * Single background thread shared by all events for delivering closed windows when neither
+     * async dispatch nor mailboxes are enabled. One thread keeps the windows of an event in order.
+     */
+    private static final ExecutorService COALESCED = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "EventCenter-coalesced");
+        t.setDaemon(true);
+        return t;
+    });
     /**
      * Singleton Initialization
      */
     private static EventCenter self = new EventCenter();
     /**
-     * Contains a map of events to subscriber list
+     * Topic of each event as a one-topic dispatch table, indexed by {@link Events#ordinal()}
+     */
+    private final EventTopic[][] eventList;
+    /**
+     * Batch subscribers of each event, indexed like eventList
+     */
+    private final EventTopic[][] batchList;
+    /**
+     * Coalescing window of each event, null when posts are delivered right away
+     */
+    private final AtomicReferenceArray<Coalescer> coalescers;
+    /**
+     * Topic per payload class, created on first subscribe and kept
+     */
+    private final ConcurrentHashMap<Class<?>, EventTopic> typeTopics;
+    /**
+     * Incremented when a topic is created, so cached tables missing it are resolved again
+     */
+    private final AtomicInteger topicVersion;
+    /**
+     * Topics reached by posting each concrete class, most specific first
+     */
+    private final ClassValue<DispatchTable> dispatchTables;
+    /**
+     * Consumers of async posts, null when async dispatch is off
+     */
+    private volatile AsyncDispatcher dispatcher;
+    /**
+     * Runs mailbox drain tasks, null when mailboxes are off
      */
-    private Hashtable<Events, Hashtable<Object, EventFunction>> eventList;
+    private volatile ForkJoinPool mailboxPool;
+    private volatile int mailboxCapacity;
+    /**
+     * Mailbox of each subscriber id, kept while a subscription of the id is bound to it. Only used
+     * once mailboxes are enabled, when a subscriber receives its first queued post.
+     */
+    private final Map<Object, EventMailbox> mailboxes = new IdentityHashMap<>();
 
     /**
      * Private constructor to prevent instantiating multiple instances.
      * Use getInstance() to get singleton.
      */
     private EventCenter() {
-        eventList = new Hashtable<>();
+        Events[] events = Events.values();
+        eventList = new EventTopic[events.length][];
+        batchList = new EventTopic[events.length][];
+        for(Events e : events) {
+            eventList[e.ordinal()] = new EventTopic[] {new EventTopic(e.name())};
+            batchList[e.ordinal()] = new EventTopic[] {new EventTopic(e.name() + " batch")};
+        }
+        coalescers = new AtomicReferenceArray<>(events.length);
+        typeTopics = new ConcurrentHashMap<>();
+        topicVersion = new AtomicInteger();
+        dispatchTables = new ClassValue<DispatchTable>() {
+            @Override
+            protected DispatchTable computeValue(Class<?> type) {
+                int version = topicVersion.get(); // read first, a topic created while resolving marks it stale
+                return new DispatchTable(version, resolve(type));
+            }
+        };
     }
 
     /**
@@ -61,72 +198,596 @@ public class EventCenter {
     }
 
     /**
-     * Subscribe to event with function to call when event occurs
-     * 
+     * Subscribe to event with function to call when event occurs. Ignored if id is already
+     * subscribed to the event.
+     *
      * @param e Type of Event to subscribe to
      * @param id UniqueID of the class
      * @param function Method to call when function occurs
      */
     public void subscribeEvent(Events e, Object id, EventFunction function) {
-        //        System.out.println("Event Subscribed: " + e + " for id: " + id);
-        if(eventList.containsKey(e)) //check if event exist in list
-        {
-            Hashtable<Object, EventFunction> event = eventList.get(e);
-
-            if(!event.containsKey(id.hashCode())) //check if id exist in event
-            {
-                event.put(id.hashCode(), function);
-            }
-            else {
-                //                System.out.println("ID: " + id + " already exist for event: " + event);
-            }
-        }
-        else {
-            Hashtable<Object, EventFunction> newEvent = new Hashtable<Object, EventFunction>();
-            newEvent.put(id.hashCode(), function);
-            eventList.put(e, newEvent);
-        }
+        subscribeTo(eventList[e.ordinal()][0], id, function::postEvent);
     }
 
     /**
      * Unsubscribe to a specific event
-     * 
+     *
      * @param e Event to unsubscribe to
      * @param id UniqueID of the class
      */
     public void unsubscribeEvent(Events e, Object id) {
-        // check if event exist, if so get the event and remove event with id
-        if(eventList.containsKey(e)) {
-            Hashtable<Object, EventFunction> event = eventList.get(e);
-            event.remove(id.hashCode());
+        unsubscribeFrom(eventList[e.ordinal()][0], id);
+        unsubscribeFrom(batchList[e.ordinal()][0], id);
+    }
+
+    /**
+     * Subscribe to event with function to call with a list of payloads. With coalescing the list
+     * holds every payload posted in the window, oldest first. Without it each post is delivered as
+     * a one-element list. Ignored if id is already a batch subscriber of the event.
+     *
+     * @param e Type of Event to subscribe to
+     * @param id UniqueID of the class
+     * @param function Method to call with each batch
+     */
+    @SuppressWarnings("unchecked")
+    public void subscribeBatch(Events e, Object id, Consumer<List<Object>> function) {
+        // only lists are posted to batch topics
+        subscribeTo(batchList[e.ordinal()][0], id, (Consumer<Object>)(Consumer<?>)function);
+    }
+
+    /**
+     * Coalesce posts of an event. The first post starts a window, posts within it are held, and at
+     * its end subscribers receive the latest payload once and batch subscribers receive the list
+     * of payloads. Both post methods then return without delivering. Changing or disabling the
+     * window delivers what is held.
+     *
+     * @param e      Event to coalesce
+     * @param window Max delay of a post, 0 to deliver right away
+     * @param unit   {@link TimeUnit} of window
+     */
+    public void setCoalescing(Events e, long window, TimeUnit unit) {
+        Coalescer previous = coalescers.getAndSet(e.ordinal(), window > 0 ? new Coalescer(e.ordinal(), unit.toNanos(window)) : null);
+        if(previous != null) {
+            previous.flush();
         }
     }
 
     /**
-     * Unsubscribe to all events
-     * 
+     * Subscribe to events of a class, including its subclasses and implementations. Ignored if id
+     * is already subscribed to the class.
+     *
+     * @param type     Class of events to receive
+     * @param id       UniqueID of the class
+     * @param function Method to call with each event
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void subscribe(Class<T> type, Object id, Consumer<? super T> function) {
+        // only instances of type are posted to its topic
+        subscribeTo(topicFor(type), id, (Consumer<Object>)function);
+    }
+
+    /**
+     * Unsubscribe to events of a class
+     *
+     * @param type Class subscribed to
+     * @param id   UniqueID of the class
+     */
+    public void unsubscribe(Class<?> type, Object id) {
+        EventTopic topic = typeTopics.get(type);
+        if(topic != null) {
+            unsubscribeFrom(topic, id);
+        }
+    }
+
+    /**
+     * Unsubscribe to all events and classes
+     *
      * @param id UniqueID of the class
      */
     public void unsubscribeAllEvents(Object id) {
-        // for each event, remove event with id
-        Enumeration<Hashtable<Object, EventFunction>> events = eventList.elements();
-        while(events.hasMoreElements()) {
-            events.nextElement().remove(id.hashCode());
+        for(EventTopic[] table : eventList) {
+            unsubscribeFrom(table[0], id);
+        }
+        for(EventTopic[] table : batchList) {
+            unsubscribeFrom(table[0], id);
+        }
+        for(EventTopic topic : typeTopics.values()) {
+            unsubscribeFrom(topic, id);
         }
     }
 
     /**
      * Post event to subscribers
-     * 
+     *
      * @param e Specific event to post
      * @param obj Data to pass
      */
     public void postEvent(Events e, Object obj) {
-        if(eventList.containsKey(e)) {
-            Hashtable<Object, EventFunction> events = eventList.get(e);
-            Enumeration<EventFunction> subscriberFunctions = events.elements();
-            while(subscriberFunctions.hasMoreElements()) {
-                subscriberFunctions.nextElement().postEvent(obj);
+        int i = e.ordinal();
+        Coalescer coalescer = coalescers.get(i);
+        if(coalescer != null) {
+            coalescer.add(obj);
+            return;
+        }
+        eventList[i][0].post(obj);
+        if(batchList[i][0].hasSubscribers()) {
+            batchList[i][0].post(Collections.singletonList(obj));
+        }
+    }
+
+    /**
+     * Post event to subscribers of its class, superclasses and interfaces, most specific first.
+     * A subscriber of several of them receives the event once per subscription.
+     *
+     * @param event Event to post, not null
+     */
+    public void post(Object event) {
+        dispatch(tableFor(event.getClass()), event);
+    }
+
+    private void subscribeTo(EventTopic topic, Object id, Consumer<Object> function) {
+        topic.subscribe(id, function);
+    }
+
+    private void unsubscribeFrom(EventTopic topic, Object id) {
+        EventTopic.Subscriber removed = topic.unsubscribe(id);
+        // unsubscribed is set before mailbox is read, so a concurrent bind sees one or the other
+        if(removed != null && removed.mailbox != null) {
+            releaseMailbox(removed);
+        }
+    }
+
+    /**
+     * Returns the mailbox shared by all subscriptions of the subscriber id, binding it on the
+     * subscriber's first queued post.
+     */
+    private EventMailbox mailboxOf(EventTopic.Subscriber subscriber) {
+        EventMailbox mailbox = subscriber.mailbox;
+        if(mailbox != null) {
+            return mailbox;
+        }
+        synchronized(mailboxes) {
+            if(subscriber.mailbox == null) {
+                mailbox = mailboxes.computeIfAbsent(subscriber.id, EventMailbox::new);
+                mailbox.subscriptions++;
+                subscriber.mailbox = mailbox;
+                if(subscriber.unsubscribed) {
+                    releaseMailbox(subscriber); // posted while unsubscribing, still delivered
+                }
+            }
+            return subscriber.mailbox;
+        }
+    }
+
+    private void releaseMailbox(EventTopic.Subscriber subscriber) {
+        synchronized(mailboxes) {
+            if(subscriber.released) {
+                return;
+            }
+            subscriber.released = true;
+            EventMailbox mailbox = subscriber.mailbox;
+            if(--mailbox.subscriptions == 0 && mailboxes.get(subscriber.id) == mailbox) {
+                mailboxes.remove(subscriber.id); // queued events are still delivered
+            }
+        }
+    }
+
+    private static void dispatch(EventTopic[] table, Object payload) {
+        for(int i = 0; i < table.length; i++) {
+            table[i].post(payload);
+        }
+    }
+
+    private EventTopic topicFor(Class<?> type) {
+        EventTopic topic = typeTopics.get(type);
+        if(topic == null) {
+            topic = typeTopics.computeIfAbsent(type, t -> new EventTopic(t.getName()));
+            topicVersion.incrementAndGet();
+        }
+        return topic;
+    }
+
+    private EventTopic[] tableFor(Class<?> type) {
+        DispatchTable table = dispatchTables.get(type);
+        if(table.version != topicVersion.get()) {
+            dispatchTables.remove(type); // a supertype got its first subscriber
+            table = dispatchTables.get(type);
+        }
+        return table.topics;
+    }
+
+    /**
+     * Existing topics of type, its superclasses and all interfaces, with Object last.
+     */
+    private EventTopic[] resolve(Class<?> type) {
+        List<Class<?>> types = new ArrayList<>();
+        for(Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            types.add(c);
+        }
+        for(int i = 0; i < types.size(); i++) {
+            for(Class<?> implemented : types.get(i).getInterfaces()) {
+                if(!types.contains(implemented)) {
+                    types.add(implemented);
+                }
+            }
+        }
+        types.add(Object.class);
+        List<EventTopic> table = new ArrayList<>();
+        for(Class<?> c : types) {
+            EventTopic topic = typeTopics.get(c);
+            if(topic != null) {
+                table.add(topic);
+            }
+        }
+        return table.toArray(new EventTopic[table.size()]);
+    }
+
+    /**
+     * Start delivering {@link #postEventAsync(Events, Object)} posts on consumer threads. Replaces
+     * the current consumers, after they deliver what is queued. With one consumer events are
+     * delivered in posting order. With more they are delivered concurrently, so subscribers must
+     * be thread-safe.
+     *
+     * @param capacity     Max queued events, rounded up to a power of two
+     * @param consumers    Number of consumer threads
+     * @param backpressure {@link Backpressure} when the queue is full
+     */
+    public synchronized void enableAsync(int capacity, int consumers, Backpressure backpressure) {
+        disableAsync();
+        dispatcher = new AsyncDispatcher(capacity, consumers, backpressure);
+    }
+
+    /**
+     * Stop consumer threads after they deliver what is queued. Async posts are then delivered
+     * synchronously. When called from a subscriber on a consumer thread, that thread is not waited
+     * for and stops once the subscriber returns.
+     */
+    public synchronized void disableAsync() {
+        AsyncDispatcher current = dispatcher;
+        if(current != null) {
+            dispatcher = null;
+            current.shutdown();
+        }
+    }
+
+    /**
+     * Queue event for delivery on a consumer thread or subscriber mailboxes and return. Does not
+     * allocate. Delivered synchronously when neither async dispatch nor mailboxes are enabled.
+     *
+     * @param e Specific event to post
+     * @param obj Data to pass
+     * @return False if the event was dropped by {@link Backpressure#DROP_NEWEST} or a full mailbox
+     */
+    public boolean postEventAsync(Events e, Object obj) {
+        int i = e.ordinal();
+        if(coalescers.get(i) != null || !isQueuing()) {
+            postEvent(e, obj);
+            return true;
+        }
+        if(batchList[i][0].hasSubscribers()) {
+            send(batchList[i], Collections.singletonList(obj));
+        }
+        return send(eventList[i], obj);
+    }
+
+    /**
+     * Queue event for delivery on a consumer thread or subscriber mailboxes and return, see
+     * {@link #post(Object)}. Does not allocate once the class has been posted. Delivered
+     * synchronously when neither async dispatch nor mailboxes are enabled.
+     *
+     * @param event Event to post, not null
+     * @return False if the event was dropped by {@link Backpressure#DROP_NEWEST} or a full mailbox
+     */
+    public boolean postAsync(Object event) {
+        EventTopic[] table = tableFor(event.getClass());
+        if(!isQueuing()) {
+            dispatch(table, event);
+            return true;
+        }
+        return send(table, event);
+    }
+
+    /**
+     * Deliver queued posts through a mailbox per subscriber id instead of the async consumers.
+     * Replaces the current pool, after it delivers what is queued.
+     *
+     * @param capacity    Max queued events per subscriber, rounded up to a power of two. Applies to
+     *                    mailboxes first used after this call
+     * @param parallelism Number of worker threads
+     */
+    public synchronized void enableMailboxes(int capacity, int parallelism) {
+        disableMailboxes();
+        mailboxCapacity = capacity;
+        mailboxPool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("EventCenter-mailbox-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, true); // async mode, FIFO order for scheduled drain tasks
+    }
+
+    /**
+     * Stop the mailbox pool after it delivers what is queued.
+     */
+    public synchronized void disableMailboxes() {
+        ForkJoinPool pool = mailboxPool;
+        if(pool != null) {
+            mailboxPool = null;
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @param id UniqueID of the class
+     * @return {@link MailboxStatistics} of the subscriber, null if id has no subscription that
+     *         received a post through a mailbox
+     */
+    public MailboxStatistics getMailboxStatistics(Object id) {
+        synchronized(mailboxes) {
+            EventMailbox mailbox = mailboxes.get(id);
+            return mailbox == null ? null : mailbox.getStatistics();
+        }
+    }
+
+    private boolean isQueuing() {
+        return mailboxPool != null || dispatcher != null;
+    }
+
+    /**
+     * @return Events dropped by backpressure since async dispatch was enabled
+     */
+    public long getDroppedEvents() {
+        AsyncDispatcher current = dispatcher;
+        return current == null ? 0 : current.dropped.get();
+    }
+
+    /**
+     * @return Approximate number of events waiting for a consumer
+     */
+    public int getQueuedEvents() {
+        AsyncDispatcher current = dispatcher;
+        return current == null ? 0 : current.ring.size();
+    }
+
+    /**
+     * Delivers a dequeued event. Errors of each subscriber are logged so later subscribers still
+     * receive the event and the consumer keeps running.
+     */
+    private void deliver(Object table, Object payload) {
+        for(EventTopic topic : (EventTopic[])table) {
+            for(EventTopic.Subscriber subscriber : topic.subscribers()) {
+                try {
+                    subscriber.function.accept(payload);
+                }
+                catch (RuntimeException ex) {
+                    error("Subscriber " + subscriber.id + " of " + topic + " failed: " + ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers through the mailboxes or async consumers when enabled, otherwise on the calling
+     * thread.
+     *
+     * @return False if the event was dropped for any subscriber
+     */
+    private boolean send(EventTopic[] table, Object payload) {
+        ForkJoinPool pool = mailboxPool;
+        if(pool != null) {
+            int capacity = mailboxCapacity;
+            boolean accepted = true;
+            for(EventTopic topic : table) {
+                for(EventTopic.Subscriber subscriber : topic.subscribers()) {
+                    accepted &= mailboxOf(subscriber).offer(subscriber.function, payload, capacity, pool);
+                }
+            }
+            return accepted;
+        }
+        AsyncDispatcher current = dispatcher;
+        if(current != null) {
+            return current.post(table, payload);
+        }
+        deliver(table, payload);
+        return true;
+    }
+
+    /**
+     * Topics reached by a class and the topic version they were resolved at
+     */
+    private static final class DispatchTable {
+        final int version;
+        final EventTopic[] topics;
+
+        DispatchTable(int version, EventTopic[] topics) {
+            this.version = version;
+            this.topics = topics;
+        }
+    }
+
+    /**
+     * Posts of one event held until the end of a window.
+     */
+    private final class Coalescer {
+        private final int event;
+        private final long windowNanos;
+        private Object latest;
+        private List<Object> batch = new ArrayList<>();
+        private int held; // posts in the current window
+        private boolean scheduled;
+
+        Coalescer(int event, long windowNanos) {
+            this.event = event;
+            this.windowNanos = windowNanos;
+        }
+
+        synchronized void add(Object obj) {
+            latest = obj;
+            held++;
+            if(batchList[event][0].hasSubscribers()) {
+                batch.add(obj);
+            }
+            if(!scheduled) {
+                scheduled = true;
+                TIMER.schedule(this::expire, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * Runs on the timer, hands synchronous delivery to another thread.
+         */
+        private void expire() {
+            if(isQueuing()) {
+                flush();
+            }
+            else {
+                COALESCED.execute(this::flush);
+            }
+        }
+
+        /**
+         * Ends the window, delivering what is held.
+         */
+        void flush() {
+            Object payload;
+            List<Object> payloads;
+            synchronized(this) {
+                scheduled = false;
+                if(held == 0) {
+                    return;
+                }
+                payload = latest;
+                payloads = batch;
+                latest = null;
+                held = 0;
+                batch = new ArrayList<>();
+            }
+            send(eventList[event], payload);
+            if(!payloads.isEmpty()) {
+                send(batchList[event], payloads);
+            }
+        }
+    }
+
+    /**
+     * Ring buffer of async posts and the threads consuming it.
+     */
+    private final class AsyncDispatcher implements Runnable {
+        private static final long PARK_NANOS = 10_000_000; // idle consumers recheck at least this often
+        private static final long BLOCK_PARK_NANOS = 50_000;
+        private final EventRingBuffer ring;
+        private final Backpressure backpressure;
+        private final Thread[] threads;
+        private final EventRingBuffer.Handler deliver = EventCenter.this::deliver;
+        private final EventRingBuffer.Handler discard;
+        private final AtomicInteger sleepers = new AtomicInteger(); // consumers parked or about to
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean running = true;
+
+        AsyncDispatcher(int capacity, int consumers, Backpressure backpressure) {
+            ring = new EventRingBuffer(capacity);
+            this.backpressure = backpressure;
+            discard = (event, payload) -> dropped.incrementAndGet();
+            threads = new Thread[consumers];
+            for(int i = 0; i < consumers; i++) {
+                threads[i] = new Thread(this, "EventCenter-dispatcher-" + i);
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+        }
+
+        boolean post(EventTopic[] table, Object obj) {
+            if(!ring.offer(table, obj)) {
+                switch(backpressure) {
+                    case DROP_NEWEST:
+                        dropped.incrementAndGet();
+                        return false;
+                    case CALLER_RUNS:
+                        deliver(table, obj);
+                        return true;
+                    case DROP_OLDEST:
+                        while(!ring.offer(table, obj)) {
+                            ring.poll(discard);
+                        }
+                        break;
+                    case BLOCK:
+                        while(!ring.offer(table, obj)) {
+                            if(!running || isConsumer()) {
+                                // consumers are gone, or this is one and waiting may starve the rest
+                                deliver(table, obj);
+                                return true;
+                            }
+                            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                        }
+                        break;
+                }
+            }
+            if(!running) {
+                // queued after consumers may have finished draining
+                while(ring.poll(deliver)) {
+                }
+            }
+            else if(sleepers.get() > 0) {
+                for(Thread t : threads) {
+                    LockSupport.unpark(t);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            while(true) {
+                if(ring.poll(deliver)) {
+                    continue;
+                }
+                if(!running) {
+                    if(ring.isEmpty()) {
+                        return;
+                    }
+                    continue; // claimed slot not yet published
+                }
+                sleepers.incrementAndGet();
+                if(running && ring.isEmpty()) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                sleepers.decrementAndGet();
+            }
+        }
+
+        private boolean isConsumer() {
+            Thread self = Thread.currentThread();
+            for(Thread t : threads) {
+                if(t == self) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void shutdown() {
+            running = false;
+            for(Thread t : threads) {
+                LockSupport.unpark(t);
+            }
+            Thread self = Thread.currentThread();
+            for(Thread t : threads) {
+                if(t == self) {
+                    continue; // disabled from a subscriber, exits after it returns
+                }
+                try {
+                    t.join();
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
         }
     }
@@ -0,0 +1,125 @@
+package org.tonyhsu17.utilities;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+
+
+/**
+ * Bounded queue of events for one {@link EventCenter} subscriber id, drained by at most one task
+ * at a time so the subscriber receives its events in posting order.
+ * <p>
+ * Events are (function, payload) pairs in an {@link EventRingBuffer}, created on first use. Posting
+ * to an idle mailbox schedules a drain task. The task delivers a bounded batch and reschedules
+ * itself if more is queued, so one busy subscriber cannot hold a worker while others wait. A full
+ * mailbox drops the posted event.
+ *
+ * @author Tony Hsu
+ */
+final class EventMailbox implements Runnable, Logger {
+    private static final int DRAIN_BATCH = 64;
+    private final Object id;
+    private volatile EventRingBuffer ring; // null until first use
+    private volatile Executor executor; // executor of the last schedule
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final EventRingBuffer.Handler deliver = this::deliver;
+    int subscriptions; // guarded by the EventCenter mailbox registry
+
+    EventMailbox(Object id) {
+        this.id = id;
+    }
+
+    /**
+     * Queues an event and schedules a drain if the mailbox is idle.
+     *
+     * @param function Subscriber function
+     * @param payload  Event to pass
+     * @param capacity Size of the mailbox if this is its first use
+     * @param executor Runs drain tasks
+     * @return False if the mailbox was full and the event dropped
+     */
+    boolean offer(Consumer<Object> function, Object payload, int capacity, Executor executor) {
+        EventRingBuffer current = ring;
+        if(current == null) {
+            current = createRing(capacity);
+        }
+        if(!current.offer(function, payload)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if(scheduled.compareAndSet(false, true)) {
+            this.executor = executor;
+            if(!schedule()) {
+                run(); // executor shut down, deliver on the posting thread
+            }
+        }
+        return true;
+    }
+
+    private synchronized EventRingBuffer createRing(int capacity) {
+        if(ring == null) {
+            ring = new EventRingBuffer(capacity);
+        }
+        return ring;
+    }
+
+    /**
+     * @return False if the executor is shut down
+     */
+    private boolean schedule() {
+        try {
+            executor.execute(this);
+            return true;
+        }
+        catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        EventRingBuffer current = ring;
+        while(true) {
+            for(int i = 0; i < DRAIN_BATCH && current.poll(deliver); i++) {
+            }
+            if(!current.isEmpty()) {
+                if(schedule()) {
+                    return; // let other mailboxes run
+                }
+                continue; // shut down, drain here
+            }
+            scheduled.set(false);
+            // recheck for events queued after the last poll but before scheduled was cleared
+            if(current.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(Object function, Object payload) {
+        try {
+            ((Consumer<Object>)function).accept(payload);
+            delivered.incrementAndGet();
+        }
+        catch (RuntimeException e) {
+            failed.incrementAndGet();
+            error("Subscriber " + id + " failed: " + e);
+        }
+    }
+
+    /**
+     * @return Counters of this mailbox
+     */
+    MailboxStatistics getStatistics() {
+        EventRingBuffer current = ring;
+        return current == null ? new MailboxStatistics(0, 0, delivered.get(), failed.get(), dropped.get())
+            : new MailboxStatistics(current.size(), current.capacity(), delivered.get(), failed.get(), dropped.get());
+    }
+}
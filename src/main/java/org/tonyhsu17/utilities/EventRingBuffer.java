@@ -0,0 +1,125 @@
+package org.tonyhsu17.utilities;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+
+/**
+ * Bounded multi-producer, multi-consumer queue of (event, payload) pairs in preallocated slots.
+ * <p>
+ * Producers and consumers claim a position by CAS on the tail or head counter, then hand the slot
+ * over through its sequence number: a slot at position p is free for the producer of p when its
+ * sequence is p, and holds an event for the consumer of p when its sequence is p + 1. Releasing a
+ * slot advances its sequence by the capacity for the next lap. Neither side locks or allocates.
+ *
+ * @author Tony Hsu
+ */
+final class EventRingBuffer {
+    /**
+     * Receives a dequeued pair after its slot is released.
+     */
+    interface Handler {
+        void handle(Object event, Object payload);
+    }
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Object[] events;
+    private final Object[] payloads;
+    private final AtomicLong tail = new AtomicLong(); // next position to produce
+    private final AtomicLong head = new AtomicLong(); // next position to consume
+
+    /**
+     * @param capacity Min number of slots, rounded up to a power of two
+     */
+    EventRingBuffer(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        events = new Object[size];
+        payloads = new Object[size];
+    }
+
+    /**
+     * @return True if queued, false if full
+     */
+    boolean offer(Object event, Object payload) {
+        long pos = tail.get();
+        int i;
+        while(true) {
+            i = (int)pos & mask;
+            long diff = sequences.get(i) - pos;
+            if(diff == 0) {
+                if(tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            }
+            else if(diff < 0) {
+                return false; // slot still holds the event from the last lap
+            }
+            else {
+                pos = tail.get(); // another producer took pos
+            }
+        }
+        events[i] = event;
+        payloads[i] = payload;
+        sequences.set(i, pos + 1); // publishes the writes above
+        return true;
+    }
+
+    /**
+     * Dequeues the oldest pair and passes it to handler.
+     *
+     * @return True if a pair was dequeued, false if empty
+     */
+    boolean poll(Handler handler) {
+        long pos = head.get();
+        int i;
+        while(true) {
+            i = (int)pos & mask;
+            long diff = sequences.get(i) - (pos + 1);
+            if(diff == 0) {
+                if(head.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = head.get();
+            }
+            else if(diff < 0) {
+                return false; // not yet published
+            }
+            else {
+                pos = head.get(); // another consumer took pos
+            }
+        }
+        Object event = events[i];
+        Object payload = payloads[i];
+        events[i] = null;
+        payloads[i] = null;
+        sequences.set(i, pos + mask + 1);
+        handler.handle(event, payload);
+        return true;
+    }
+
+    /**
+     * @return True if no position has been claimed past the consumed ones
+     */
+    boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    /**
+     * @return Approximate number of queued pairs
+     */
+    int size() {
+        return (int)Math.max(0, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,124 @@
+package org.tonyhsu17.utilities;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+
+
+/**
+ * Subscribers of one {@link EventCenter} event or payload class.
+ * <p>
+ * Subscribers are held in an immutable array that is replaced by CAS, never modified, when a
+ * subscriber is added or removed. Posting reads the current array once and loops over it without
+ * locking or allocating, and keeps delivering to the subscribers it read even if they unsubscribe
+ * mid-post. Subscribers are matched by identity.
+ *
+ * @author Tony Hsu
+ */
+final class EventTopic {
+    /**
+     * Subscriber id, the function to call and the mailbox of the id
+     */
+    static final class Subscriber {
+        final Object id;
+        final Consumer<Object> function;
+        volatile EventMailbox mailbox; // bound by EventCenter on the first post to a mailbox
+        volatile boolean unsubscribed;
+        boolean released; // mailbox reference dropped, guarded by the EventCenter mailbox registry
+
+        Subscriber(Object id, Consumer<Object> function) {
+            this.id = id;
+            this.function = function;
+        }
+    }
+
+    private static final Subscriber[] NO_SUBSCRIBERS = new Subscriber[0];
+    private static final AtomicReferenceFieldUpdater<EventTopic, Subscriber[]> SUBSCRIBERS =
+        AtomicReferenceFieldUpdater.newUpdater(EventTopic.class, Subscriber[].class, "subscribers");
+    private final String name;
+    private volatile Subscriber[] subscribers = NO_SUBSCRIBERS;
+
+    /**
+     * @param name Event or class name, for logging
+     */
+    EventTopic(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return False if id is already subscribed
+     */
+    boolean subscribe(Object id, Consumer<Object> function) {
+        Subscriber subscriber = new Subscriber(id, function);
+        while(true) {
+            Subscriber[] current = subscribers;
+            if(indexOf(current, id) >= 0) {
+                return false;
+            }
+            Subscriber[] updated = new Subscriber[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = subscriber;
+            if(SUBSCRIBERS.compareAndSet(this, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return Removed subscriber, null if id was not subscribed
+     */
+    Subscriber unsubscribe(Object id) {
+        while(true) {
+            Subscriber[] current = subscribers;
+            int index = indexOf(current, id);
+            if(index < 0) {
+                return null;
+            }
+            Subscriber[] updated = NO_SUBSCRIBERS;
+            if(current.length > 1) {
+                updated = new Subscriber[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, updated.length - index);
+            }
+            if(SUBSCRIBERS.compareAndSet(this, current, updated)) {
+                current[index].unsubscribed = true;
+                return current[index];
+            }
+        }
+    }
+
+    /**
+     * Calls every subscriber on the current thread.
+     */
+    void post(Object payload) {
+        Subscriber[] current = subscribers;
+        for(int i = 0; i < current.length; i++) {
+            current[i].function.accept(payload);
+        }
+    }
+
+    /**
+     * @return Current subscribers, must not be modified
+     */
+    Subscriber[] subscribers() {
+        return subscribers;
+    }
+
+    boolean hasSubscribers() {
+        return subscribers.length > 0;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static int indexOf(Subscriber[] subscribers, Object id) {
+        for(int i = 0; i < subscribers.length; i++) {
+            if(subscribers[i].id == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
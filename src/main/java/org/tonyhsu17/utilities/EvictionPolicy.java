@@ -0,0 +1,90 @@
+package org.tonyhsu17.utilities;
+
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * Eviction settings for {@link HistoryLog}, applied on top of its max entry count.
+ * Rules combine, e.g. LRU with a time to live and a byte cap.
+ * <ul>
+ * <li>FIFO (default): the oldest added entry is evicted first.</li>
+ * <li>LRU: a membership check or repeated add moves the entry to the end.</li>
+ * <li>Time to live: entries older than the duration are dropped. With LRU the age counts from
+ * the last access.</li>
+ * <li>Max bytes: total UTF-8 size of entries is capped.</li>
+ * </ul>
+ *
+ * @author Tony Hsu
+ */
+public class EvictionPolicy {
+    private boolean accessOrder;
+    private long timeToLive; // millis, 0 for none
+    private long maxBytes; // 0 for none
+
+    /**
+     * @return Policy evicting the oldest added entry first
+     */
+    public static EvictionPolicy fifo() {
+        return new EvictionPolicy();
+    }
+
+    /**
+     * @return Policy evicting the least recently used entry first
+     */
+    public static EvictionPolicy lru() {
+        return new EvictionPolicy().setAccessOrder(true);
+    }
+
+    /**
+     * Order entries by last access instead of insertion.
+     *
+     * @param accessOrder True for LRU
+     * @return
+     */
+    public EvictionPolicy setAccessOrder(boolean accessOrder) {
+        this.accessOrder = accessOrder;
+        return this;
+    }
+
+    /**
+     * Drop entries once they are older than duration.
+     *
+     * @param duration Max age, 0 for none
+     * @param unit     {@link TimeUnit} of duration
+     * @return
+     */
+    public EvictionPolicy setTimeToLive(long duration, TimeUnit unit) {
+        timeToLive = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * Cap total size of entries.
+     *
+     * @param maxBytes Max UTF-8 bytes, 0 for none
+     * @return
+     */
+    public EvictionPolicy setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public boolean isAccessOrder() {
+        return accessOrder;
+    }
+
+    /**
+     * @return Max age in milliseconds, 0 for none
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @return Max UTF-8 bytes, 0 for none
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -1,14 +1,24 @@
 package org.tonyhsu17.utilities;
 
+import org.tonyhsu17.utilities.checksum.ChecksumContext;
+import org.tonyhsu17.utilities.checksum.ChecksumEngine;
+import org.tonyhsu17.utilities.checksum.ChecksumEngine.Strategy;
+import org.tonyhsu17.utilities.checksum.ParallelChecksum;
+
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.zip.CRC32;
-import java.util.zip.CheckedInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 
 
 public class FileUtils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final ChecksumEngine DIRECT_ENGINE = new ChecksumEngine(Strategy.DIRECT_BUFFER);
+    private static final ChecksumEngine MAPPED_ENGINE = new ChecksumEngine(Strategy.MEMORY_MAPPED);
+    private static final ChecksumEngine STREAM_ENGINE = new ChecksumEngine(Strategy.STREAM);
+
     /**
      * Calculates the CRC32 value of a file.
      *
@@ -28,30 +38,180 @@ public class FileUtils {
      * @return CRC value formatted in n length, hexadecimal in lowercase
      */
     public static String getCRC32(File file, int formatLength) throws IOException
+    {
+        return getCRC32(file, formatLength, ChecksumEngine.DEFAULT_STRATEGY);
+    }
+
+    /**
+     * Calculates the CRC32 value of a file.
+     *
+     * @param file File to compute the CRC value
+     * @param formatLength CRC value formatted to length
+     * @param strategy {@link Strategy} used to read the file
+     * @return CRC value formatted in n length, hexadecimal in lowercase
+     */
+    public static String getCRC32(File file, int formatLength, Strategy strategy) throws IOException
     {
         if(file == null)
         {
             return null;
         }
-        String hex = "";
         try
         {
-            CheckedInputStream cis = new CheckedInputStream(new FileInputStream(file), new CRC32());
-            byte[] buf = new byte[10240]; // 10mb
+            return toHex(getEngine(strategy).crc32(file), formatLength);
+        }
+        catch (IOException | NullPointerException e)
+        {
+            throw new IOException("Unable to determine CRC32 value for file: " + file.getName());
+        }
+    }
 
-            while(cis.read(buf) >= 0);
+    /**
+     * Calculates the CRC32 value of a file by checksumming fixed-size ranges in parallel.
+     * Result is identical to {@link #getCRC32(File, int)}.
+     *
+     * @param file File to compute the CRC value
+     * @param formatLength CRC value formatted to length
+     * @param chunkSize Size of each range in bytes
+     * @param parallelism Number of ranges to read concurrently
+     * @return CRC value formatted in n length, hexadecimal in lowercase
+     */
+    public static String getCRC32Parallel(File file, int formatLength, long chunkSize, int parallelism) throws IOException
+    {
+        if(file == null)
+        {
+            return null;
+        }
+        try (ParallelChecksum parallel = new ParallelChecksum(chunkSize, parallelism))
+        {
+            return toHex(parallel.crc32(file.toPath()), formatLength);
+        }
+        catch (IOException e)
+        {
+            throw new IOException("Unable to determine CRC32 value for file: " + file.getName());
+        }
+    }
 
-            hex = Long.toHexString(cis.getChecksum().getValue());
-            cis.close();
+    /**
+     * Calculates the CRC32 value of a file without formatting it.
+     * Reuses the calling thread's {@link ChecksumContext}, so no buffers are allocated per call.
+     *
+     * @param file File to compute the CRC value
+     * @return CRC value as unsigned 32 bit value
+     */
+    public static long getCRC32Value(File file) throws IOException
+    {
+        return getCRC32Value(file, ChecksumEngine.DEFAULT_STRATEGY);
+    }
+
+    /**
+     * Calculates the CRC32 value of a file without formatting it.
+     *
+     * @param file File to compute the CRC value
+     * @param strategy {@link Strategy} used to read the file
+     * @return CRC value as unsigned 32 bit value
+     */
+    public static long getCRC32Value(File file, Strategy strategy) throws IOException
+    {
+        try
+        {
+            return getEngine(strategy).crc32(file);
         }
-        catch (IOException | NullPointerException e)
+        catch (IOException e)
         {
             throw new IOException("Unable to determine CRC32 value for file: " + file.getName());
         }
-        for(int i = hex.length(); i < formatLength; i++)
+    }
+
+    /**
+     * Formats value as lowercase hexadecimal, zero padded to formatLength.
+     *
+     * @param value Unsigned value to format
+     * @param formatLength Minimum number of digits
+     * @return Hexadecimal string
+     */
+    public static String toHex(long value, int formatLength)
+    {
+        char[] buf = new char[Math.max(hexLength(value), formatLength)];
+        toHex(value, formatLength, buf, 0);
+        return new String(buf);
+    }
+
+    /**
+     * Writes value as lowercase hexadecimal, zero padded to formatLength, into a caller supplied array.
+     *
+     * @param value Unsigned value to format
+     * @param formatLength Minimum number of digits
+     * @param dest Array to write into
+     * @param offset Index of first digit
+     * @return Number of chars written
+     */
+    public static int toHex(long value, int formatLength, char[] dest, int offset)
+    {
+        int length = Math.max(hexLength(value), formatLength);
+        for(int i = offset + length - 1; i >= offset; i--)
+        {
+            dest[i] = HEX_DIGITS[(int)(value & 0xf)];
+            value >>>= 4;
+        }
+        return length;
+    }
+
+    /**
+     * Appends value as lowercase hexadecimal, zero padded to formatLength.
+     *
+     * @param sb Builder to append to
+     * @param value Unsigned value to format
+     * @param formatLength Minimum number of digits
+     * @return sb
+     */
+    public static StringBuilder appendHex(StringBuilder sb, long value, int formatLength)
+    {
+        for(int shift = (Math.max(hexLength(value), formatLength) - 1) * 4; shift >= 0; shift -= 4)
+        {
+            sb.append(shift >= 64 ? '0' : HEX_DIGITS[(int)((value >>> shift) & 0xf)]);
+        }
+        return sb;
+    }
+
+    /**
+     * @return Number of significant hexadecimal digits, at least 1
+     */
+    private static int hexLength(long value)
+    {
+        return Math.max(1, (67 - Long.numberOfLeadingZeros(value)) / 4);
+    }
+
+    /**
+     * Makes renames into the directory of file durable. Not supported on every platform, failures
+     * are ignored since the rename itself is still atomic.
+     *
+     * @param file File that was renamed
+     */
+    static void syncDirectory(Path file)
+    {
+        Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ))
+        {
+            channel.force(true);
+        }
+        catch (IOException e)
+        {
+            // directory fsync unsupported (e.g. Windows)
+        }
+    }
+
+    private static ChecksumEngine getEngine(Strategy strategy)
+    {
+        switch(strategy)
         {
-            hex = "0" + hex;
+            case MEMORY_MAPPED:
+                return MAPPED_ENGINE;
+            case STREAM:
+                return STREAM_ENGINE;
+            case DIRECT_BUFFER:
+            default:
+                return DIRECT_ENGINE;
         }
-        return hex;
     }
 }
@@ -0,0 +1,78 @@
+package org.tonyhsu17.utilities;
+
+/**
+ * Snapshot of the membership filter counters of a {@link HistoryLog}.
+ *
+ * @author Tony Hsu
+ */
+public class FilterStatistics {
+    private final long checks;
+    private final long rejected;
+    private final long falsePositives;
+    private final int hashes;
+    private final long sizeInBytes;
+
+    public FilterStatistics(long checks, long rejected, long falsePositives, int hashes, long sizeInBytes) {
+        this.checks = checks;
+        this.rejected = rejected;
+        this.falsePositives = falsePositives;
+        this.hashes = hashes;
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    /**
+     * @return Number of membership checks
+     */
+    public long getChecks() {
+        return checks;
+    }
+
+    /**
+     * @return Number of checks answered by the filter alone
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return Number of checks the filter passed on that were not in history
+     */
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * @return Number of checks found in history
+     */
+    public long getHits() {
+        return checks - rejected - falsePositives;
+    }
+
+    /**
+     * @return Observed false positive rate among entries not in history
+     */
+    public double getFalsePositiveRate() {
+        long misses = rejected + falsePositives;
+        return misses == 0 ? 0 : (double)falsePositives / misses;
+    }
+
+    /**
+     * @return Number of probes per check
+     */
+    public int getHashes() {
+        return hashes;
+    }
+
+    /**
+     * @return Memory used by the filter in bytes
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d checks: %d hits, %d rejected, %d false positives (%.4f), %d hashes, %d bytes",
+            checks, getHits(), rejected, falsePositives, getFalsePositiveRate(), hashes, sizeInBytes);
+    }
+}
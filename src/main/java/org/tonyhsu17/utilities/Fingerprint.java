@@ -0,0 +1,55 @@
+package org.tonyhsu17.utilities;
+
+/**
+ * 64-bit hash of a char sequence, computed one char at a time so a key split across several
+ * pieces hashes the same as the concatenated string.
+ * <p>
+ * FNV-1a over UTF-16 chars followed by the MurmurHash3 finalizer, so every bit of the result is
+ * usable for table indexing. 0 is never returned and can mark an empty slot.
+ *
+ * @author Tony Hsu
+ */
+final class Fingerprint {
+    static final long SEED = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private Fingerprint() {}
+
+    /**
+     * @param s Value to hash
+     * @return Fingerprint of s, never 0
+     */
+    static long of(CharSequence s) {
+        return finish(update(SEED, s));
+    }
+
+    /**
+     * Feeds one char into a running hash started from {@link #SEED}.
+     */
+    static long update(long h, char c) {
+        return (h ^ c) * PRIME;
+    }
+
+    /**
+     * Feeds every char of s into a running hash started from {@link #SEED}.
+     */
+    static long update(long h, CharSequence s) {
+        for(int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * @param h Running hash
+     * @return Final fingerprint, never 0
+     */
+    static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
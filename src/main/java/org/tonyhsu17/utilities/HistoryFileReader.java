@@ -0,0 +1,121 @@
+package org.tonyhsu17.utilities;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+
+/**
+ * Reads entries of a text or binary log file one at a time, holding only a fixed-size read buffer
+ * and the current entry in memory.
+ *
+ * @author Tony Hsu
+ */
+final class HistoryFileReader implements Iterator<String>, Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private BufferedReader text; // null for binary files
+    private DataInputStream binary; // null for text files
+    private int remaining; // binary entries left
+    private byte[] bytes; // reused for each binary entry
+    private String next;
+
+    /**
+     * @param file    Log file, format is detected
+     * @param charset Charset of text files
+     * @throws IOException
+     */
+    HistoryFileReader(Path file, Charset charset) throws IOException {
+        if(BinaryHistoryFile.isBinary(file)) {
+            binary = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        }
+        else {
+            text = new BufferedReader(new InputStreamReader(Files.newInputStream(file), charset.newDecoder()), BUFFER_SIZE);
+        }
+        try {
+            if(binary != null) {
+                remaining = BinaryHistoryFile.readHeader(binary);
+                bytes = new byte[256];
+            }
+            next = read();
+        }
+        catch (IOException | RuntimeException e) {
+            try {
+                close();
+            }
+            catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return Lazy stream of entries, closing it closes the file
+     */
+    Stream<String> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> {
+                try {
+                    close();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    private String read() throws IOException {
+        if(text != null) {
+            return text.readLine();
+        }
+        if(remaining == 0) {
+            return null;
+        }
+        remaining--;
+        int length = binary.readInt();
+        if(length > bytes.length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        binary.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if(next == null) {
+            throw new NoSuchElementException();
+        }
+        String entry = next;
+        try {
+            next = read();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(text != null) {
+            text.close();
+        }
+        else {
+            binary.close();
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package org.tonyhsu17.utilities;
+
+import java.util.AbstractSequentialList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+
+
+/**
+ * Insertion-ordered multiset of strings backing {@link HistoryLog}.
+ * <p>
+ * Every entry is a single node that is at once part of the insertion-ordered list and of the hash
+ * table, replacing the former LinkedList + HashSet pair. Repeated entries of the same key form a
+ * circular chain in insertion order, and only the newest node of each key sits in the hash table,
+ * its nextSame pointing at the oldest. That gives O(1) add, contains, removal of the oldest
+ * occurrence of a key and eviction of the oldest entry overall, and a key stays present until its
+ * last occurrence is gone.
+ * <p>
+ * Each node carries a timestamp for time based eviction. {@link #touch(Node, long)} moves an
+ * occurrence to the end for access ordering, so with either policy the first entry is also the
+ * one with the oldest timestamp.
+ *
+ * @author Tony Hsu
+ */
+final class HistoryIndex {
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Single entry. key hash is not stored, {@link String} caches its own.
+     */
+    static final class Node {
+        final String key;
+        Node before; // previous entry in insertion order
+        Node after; // next entry in insertion order
+        Node nextInBucket; // only meaningful for the newest node of a key
+        Node nextSame; // next newer occurrence of key, the newest points back to the oldest
+        long time; // millis when added or last accessed
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+
+    private Node[] table;
+    private Node first; // oldest entry
+    private Node last; // newest entry
+    private int size; // number of entries
+    private int keys; // number of distinct keys
+    private int threshold;
+    private int modCount;
+
+    /**
+     * @param initialCapacity Expected number of distinct keys, avoids rehashing while growing
+     */
+    HistoryIndex(int initialCapacity) {
+        int capacity = MIN_CAPACITY;
+        while(capacity * LOAD_FACTOR < initialCapacity && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        table = new Node[capacity];
+        threshold = (int)(capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * @return Number of entries including repeats
+     */
+    int size() {
+        return size;
+    }
+
+    boolean contains(String key) {
+        return findNewest(key) != null;
+    }
+
+    /**
+     * Lookup without building the concatenated key.
+     */
+    boolean contains(CompositeKey key) {
+        return findNewest(key) != null;
+    }
+
+    /**
+     * Appends an occurrence of key.
+     */
+    void add(String key) {
+        add(key, 0);
+    }
+
+    /**
+     * Appends an occurrence of key.
+     *
+     * @param time Timestamp of the entry
+     */
+    void add(String key, long time) {
+        Node node = new Node(key);
+        node.time = time;
+        linkLast(node);
+        int index = indexFor(key.hashCode(), table.length);
+        Node newest = findNewest(key);
+        if(newest == null) {
+            node.nextSame = node;
+            node.nextInBucket = table[index];
+            table[index] = node;
+            if(++keys > threshold) {
+                resize();
+            }
+        }
+        else {
+            // node becomes newest, its nextSame is the oldest
+            node.nextSame = newest.nextSame;
+            newest.nextSame = node;
+            replaceInBucket(index, newest, node);
+            newest.nextInBucket = null;
+        }
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Removes the oldest occurrence of key.
+     *
+     * @return True if key was present
+     */
+    boolean remove(String key) {
+        Node newest = findNewest(key);
+        if(newest == null) {
+            return false;
+        }
+        removeOldestOf(newest);
+        return true;
+    }
+
+    /**
+     * Removes the oldest occurrence of key without building the concatenated key.
+     *
+     * @return Stored key that was removed, null if key was not present
+     */
+    String remove(CompositeKey key) {
+        Node newest = findNewest(key);
+        if(newest == null) {
+            return null;
+        }
+        removeOldestOf(newest);
+        return newest.key;
+    }
+
+    /**
+     * Evicts the oldest entry.
+     *
+     * @return Evicted key, null if empty
+     */
+    String removeOldest() {
+        if(first == null) {
+            return null;
+        }
+        String key = first.key;
+        // oldest entry overall is also the oldest occurrence of its key
+        removeOldestOf(findNewest(key));
+        return key;
+    }
+
+    /**
+     * @return Oldest key, null if empty
+     */
+    String peekOldest() {
+        return first == null ? null : first.key;
+    }
+
+    /**
+     * @return Timestamp of the oldest entry, {@link Long#MAX_VALUE} if empty
+     */
+    long peekOldestTime() {
+        return first == null ? Long.MAX_VALUE : first.time;
+    }
+
+    /**
+     * Moves the oldest occurrence of a key to the end, making it the newest. The circular chain
+     * already has it following the newest, so only the table entry changes.
+     *
+     * @param newest Node returned by findNewest
+     * @param time   New timestamp
+     */
+    void touch(Node newest, long time) {
+        Node oldest = newest.nextSame;
+        oldest.time = time;
+        if(oldest == last) {
+            return;
+        }
+        unlink(oldest);
+        linkLast(oldest);
+        if(oldest != newest) {
+            replaceInBucket(indexFor(newest.key.hashCode(), table.length), newest, oldest);
+            newest.nextInBucket = null;
+        }
+        modCount++;
+    }
+
+    /**
+     * @return Timestamps in entry order
+     */
+    long[] times() {
+        long[] times = new long[size];
+        int i = 0;
+        for(Node node = first; node != null; node = node.after) {
+            times[i++] = node.time;
+        }
+        return times;
+    }
+
+    /**
+     * Assigns timestamps in entry order.
+     *
+     * @param times One timestamp per entry, null to give every entry the same time
+     * @param time  Timestamp used when times is null
+     */
+    void setTimes(long[] times, long time) {
+        int i = 0;
+        for(Node node = first; node != null; node = node.after) {
+            node.time = times == null ? time : times[i++];
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    void clear() {
+        for(int i = 0; i < table.length; i++) {
+            table[i] = null;
+        }
+        first = last = null;
+        size = keys = 0;
+        modCount++;
+    }
+
+    /**
+     * @return Read-only live view in insertion order
+     */
+    List<String> asList() {
+        return new ListView();
+    }
+
+    Node findNewest(String key) {
+        int hash = key.hashCode();
+        for(Node node = table[indexFor(hash, table.length)]; node != null; node = node.nextInBucket) {
+            if(node.key == key || (node.key.hashCode() == hash && node.key.equals(key))) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    Node findNewest(CompositeKey key) {
+        int hash = key.stringHash();
+        for(Node node = table[indexFor(hash, table.length)]; node != null; node = node.nextInBucket) {
+            if(node.key.hashCode() == hash && key.matches(node.key)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private void removeOldestOf(Node newest) {
+        Node oldest = newest.nextSame;
+        unlink(oldest);
+        if(oldest == newest) {
+            // last occurrence, drop key from table
+            int index = indexFor(newest.key.hashCode(), table.length);
+            replaceInBucket(index, newest, newest.nextInBucket);
+            keys--;
+        }
+        else {
+            newest.nextSame = oldest.nextSame;
+        }
+        oldest.nextSame = null;
+        oldest.nextInBucket = null;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Replaces node in bucket chain with replacement, or removes it when replacement is its successor.
+     */
+    private void replaceInBucket(int index, Node node, Node replacement) {
+        if(replacement != null && replacement != node.nextInBucket) {
+            replacement.nextInBucket = node.nextInBucket;
+        }
+        if(table[index] == node) {
+            table[index] = replacement;
+            return;
+        }
+        Node prev = table[index];
+        while(prev.nextInBucket != node) {
+            prev = prev.nextInBucket;
+        }
+        prev.nextInBucket = replacement;
+    }
+
+    private void linkLast(Node node) {
+        node.before = last;
+        if(last == null) {
+            first = node;
+        }
+        else {
+            last.after = node;
+        }
+        last = node;
+    }
+
+    private void unlink(Node node) {
+        if(node.before == null) {
+            first = node.after;
+        }
+        else {
+            node.before.after = node.after;
+        }
+        if(node.after == null) {
+            last = node.before;
+        }
+        else {
+            node.after.before = node.before;
+        }
+        node.before = node.after = null;
+    }
+
+    private void resize() {
+        if(table.length >= (1 << 30)) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        Node[] newTable = new Node[table.length << 1];
+        for(Node head : table) {
+            Node node = head;
+            while(node != null) {
+                Node next = node.nextInBucket;
+                int index = indexFor(node.key.hashCode(), newTable.length);
+                node.nextInBucket = newTable[index];
+                newTable[index] = node;
+                node = next;
+            }
+        }
+        table = newTable;
+        threshold = (int)(newTable.length * LOAD_FACTOR);
+    }
+
+    static int indexFor(int hash, int length) {
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+
+    /**
+     * Read-only list backed by the insertion-ordered nodes.
+     */
+    private class ListView extends AbstractSequentialList<String> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String && HistoryIndex.this.contains((String)o);
+        }
+
+        @Override
+        public ListIterator<String> listIterator(int index) {
+            if(index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return new ListIterator<String>() {
+                private Node next = first;
+                private Node lastReturned;
+                private int nextIndex;
+                private int expectedModCount = modCount;
+
+                {
+                    while(nextIndex < index) {
+                        next();
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return nextIndex < size;
+                }
+
+                @Override
+                public String next() {
+                    checkForComodification();
+                    if(!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    lastReturned = next;
+                    next = next.after;
+                    nextIndex++;
+                    return lastReturned.key;
+                }
+
+                @Override
+                public boolean hasPrevious() {
+                    return nextIndex > 0;
+                }
+
+                @Override
+                public String previous() {
+                    checkForComodification();
+                    if(!hasPrevious()) {
+                        throw new NoSuchElementException();
+                    }
+                    next = next == null ? last : next.before;
+                    lastReturned = next;
+                    nextIndex--;
+                    return lastReturned.key;
+                }
+
+                @Override
+                public int nextIndex() {
+                    return nextIndex;
+                }
+
+                @Override
+                public int previousIndex() {
+                    return nextIndex - 1;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("History list is read-only");
+                }
+
+                @Override
+                public void set(String e) {
+                    throw new UnsupportedOperationException("History list is read-only");
+                }
+
+                @Override
+                public void add(String e) {
+                    throw new UnsupportedOperationException("History list is read-only");
+                }
+
+                private void checkForComodification() {
+                    if(modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package org.tonyhsu17.utilities;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+
+
+/**
+ * File layout behind {@link HistoryLog}: a snapshot file holding one entry per line and an
+ * append-only journal of changes made since the snapshot was written.
+ * <p>
+ * Journal records are lines starting with {@link #ADD} or {@link #REMOVE} followed by the entry.
+ * Compaction moves the journal aside, writes a new snapshot as "log.new" and only then removes the
+ * old journal and renames "log.new" over the log. {@link #recover()} finishes an interrupted
+ * compaction so records are never applied twice or lost.
+ * <p>
+ * Every write is fsynced before it is renamed into place, so a crash leaves either the old or the
+ * new file, never a partial one.
+ *
+ * @author Tony Hsu
+ */
+class HistoryJournal {
+    static final char ADD = '+';
+    static final char REMOVE = '-';
+    private static final int META_MAGIC = 0x484C4D54; // HLMT
+    private Path snapshot; // log.txt
+    private Path snapshotTemp; // log.txt.tmp, partially written snapshot
+    private Path snapshotNew; // log.txt.new, complete snapshot that includes journalOld
+    private Path journal; // log.txt.journal
+    private Path journalOld; // log.txt.journal.old, journal being compacted
+    private Path meta; // log.txt.meta, entry timestamps for eviction policies
+    private Charset charset;
+    private boolean binary; // write snapshots in {@link BinaryHistoryFile} format
+    private boolean tornAppend; // last append failed and may have left a partial line
+
+    /**
+     * Delegate method for replayed journal records.
+     */
+    interface RecordHandler {
+        void onRecord(char op, String entry);
+    }
+
+    HistoryJournal(String logPath, Charset charset) {
+        snapshot = Paths.get(logPath);
+        snapshotTemp = Paths.get(logPath + ".tmp");
+        snapshotNew = Paths.get(logPath + ".new");
+        journal = Paths.get(logPath + ".journal");
+        journalOld = Paths.get(logPath + ".journal.old");
+        meta = Paths.get(logPath + ".meta");
+        this.charset = charset;
+    }
+
+    void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * @return Path of the snapshot file
+     */
+    Path getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Finishes a compaction that was interrupted after the new snapshot was complete, and drops a
+     * torn last line left by an interrupted append so the next append starts on a new line.
+     *
+     * @throws IOException
+     */
+    void recover() throws IOException {
+        if(Files.exists(snapshotNew)) {
+            Files.deleteIfExists(journalOld);
+            Files.move(snapshotNew, snapshot, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(snapshotTemp);
+        truncateTornLine(journalOld);
+        truncateTornLine(journal);
+    }
+
+    /**
+     * Reads every entry of the snapshot, text or binary.
+     *
+     * @param handler Called for each entry in order
+     * @throws IOException
+     */
+    void readSnapshot(Consumer<String> handler) throws IOException {
+        if(!Files.exists(snapshot)) {
+            return;
+        }
+        if(BinaryHistoryFile.isBinary(snapshot)) {
+            BinaryHistoryFile.read(snapshot, handler);
+            return;
+        }
+        try (BufferedReader br = new BufferedReader(
+            new InputStreamReader(new FileInputStream(snapshot.toFile()), charset.newDecoder()))) {
+            String line = br.readLine();
+            while(line != null) {
+                handler.accept(line);
+                line = br.readLine();
+            }
+        }
+    }
+
+    /**
+     * Replays the journal being compacted (if any) followed by the live journal.
+     *
+     * @param handler Called for each record in order
+     * @return Number of records replayed
+     * @throws IOException
+     */
+    int replay(RecordHandler handler) throws IOException {
+        return replay(journalOld, handler) + replay(journal, handler);
+    }
+
+    /**
+     * @return True if a journal exists that is not yet part of the snapshot
+     */
+    boolean hasJournal() {
+        return Files.exists(journal) || Files.exists(journalOld);
+    }
+
+    /**
+     * Appends records to the live journal.
+     *
+     * @param records Encoded records, see {@link #encode(char, String)}
+     * @throws IOException
+     */
+    void append(Collection<String> records) throws IOException {
+        if(tornAppend) {
+            truncateTornLine(journal);
+            tornAppend = false;
+        }
+        tornAppend = true;
+        try (FileOutputStream fos = new FileOutputStream(journal.toFile(), true);
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, charset.newEncoder()))) {
+            for(String record : records) {
+                bw.write(record);
+                bw.write('\n');
+            }
+            bw.flush();
+            fos.getFD().sync();
+        }
+        tornAppend = false;
+    }
+
+    /**
+     * Moves the live journal aside so new records go to a fresh journal while a snapshot is written.
+     * If a previous compaction failed its journal is still aside and the live journal is appended to it.
+     *
+     * @throws IOException
+     */
+    void rotate() throws IOException {
+        if(!Files.exists(journal)) {
+            return;
+        }
+        if(Files.exists(journalOld)) {
+            try (OutputStream os = Files.newOutputStream(journalOld, StandardOpenOption.APPEND)) {
+                Files.copy(journal, os);
+            }
+            Files.delete(journal);
+        }
+        else {
+            Files.move(journal, journalOld);
+        }
+    }
+
+    /**
+     * Writes a complete snapshot and retires the rotated journal it includes.
+     *
+     * @param entries Every entry in order
+     * @throws IOException
+     */
+    void writeSnapshot(Collection<String> entries) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(snapshotTemp.toFile())) {
+            if(binary) {
+                BinaryHistoryFile.write(fos, entries);
+            }
+            else {
+                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, charset.newEncoder()));
+                for(String str : entries) {
+                    bw.write(str);
+                    bw.newLine();
+                }
+                bw.flush();
+            }
+            fos.getFD().sync();
+        }
+        Files.move(snapshotTemp, snapshotNew, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileUtils.syncDirectory(snapshot);
+        Files.deleteIfExists(journalOld);
+        Files.move(snapshotNew, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileUtils.syncDirectory(snapshot);
+    }
+
+    /**
+     * Writes entry timestamps next to the snapshot. Written before the snapshot, so the check value
+     * detects a snapshot that was not replaced afterwards.
+     *
+     * @param times Timestamp of each entry in order
+     * @param check Value identifying the entries the times belong to
+     * @throws IOException
+     */
+    void writeMeta(long[] times, long check) throws IOException {
+        Path temp = Paths.get(meta + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp.toFile())) {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+            dos.writeInt(META_MAGIC);
+            dos.writeInt(times.length);
+            dos.writeLong(check);
+            for(long time : times) {
+                dos.writeLong(time);
+            }
+            dos.flush();
+            fos.getFD().sync();
+        }
+        Files.move(temp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads entry timestamps written by {@link #writeMeta(long[], long)}.
+     *
+     * @param count Number of entries loaded
+     * @param check Value identifying the entries loaded
+     * @return Timestamps, null if missing or written for other entries
+     * @throws IOException
+     */
+    long[] readMeta(int count, long check) throws IOException {
+        if(!Files.exists(meta)) {
+            return null;
+        }
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(meta)))) {
+            if(dis.readInt() != META_MAGIC || dis.readInt() != count || dis.readLong() != check) {
+                return null;
+            }
+            long[] times = new long[count];
+            for(int i = 0; i < count; i++) {
+                times[i] = dis.readLong();
+            }
+            return times;
+        }
+    }
+
+    /**
+     * @return Journal line for an operation
+     */
+    static String encode(char op, String entry) {
+        return op + entry;
+    }
+
+    /**
+     * Replays complete lines only, a torn last line from an interrupted append is ignored. A file
+     * deleted after the exists check, e.g. by a compaction finishing, is treated as empty.
+     */
+    private int replay(Path file, RecordHandler handler) throws IOException {
+        if(!Files.exists(file)) {
+            return 0;
+        }
+        boolean complete;
+        InputStream in;
+        try {
+            complete = endsWithNewLine(file);
+            in = new FileInputStream(file.toFile());
+        }
+        catch (FileNotFoundException e) {
+            return 0;
+        }
+        int count = 0;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, charset.newDecoder()))) {
+            String line = br.readLine();
+            while(line != null) {
+                String next = br.readLine();
+                if(next == null && !complete) {
+                    break;
+                }
+                if(!line.isEmpty() && (line.charAt(0) == ADD || line.charAt(0) == REMOVE)) {
+                    handler.onRecord(line.charAt(0), line.substring(1));
+                    count++;
+                }
+                line = next;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Cuts a file after its last line break, dropping a partial record.
+     */
+    private static void truncateTornLine(Path file) throws IOException {
+        if(!Files.exists(file) || endsWithNewLine(file)) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            byte[] buffer = new byte[8192];
+            long end = raf.length();
+            while(end > 0) {
+                int length = (int)Math.min(buffer.length, end);
+                raf.seek(end - length);
+                raf.readFully(buffer, 0, length);
+                for(int i = length - 1; i >= 0; i--) {
+                    if(buffer[i] == '\n') {
+                        raf.setLength(end - length + i + 1);
+                        raf.getFD().sync();
+                        return;
+                    }
+                }
+                end -= length;
+            }
+            raf.setLength(0);
+            raf.getFD().sync();
+        }
+    }
+
+    private static boolean endsWithNewLine(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            if(raf.length() == 0) {
+                return true;
+            }
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+}
@@ -3,14 +3,55 @@ package org.tonyhsu17.utilities;
 
 import java.io.*;
 import java.nio.charset.Charset;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 
 /**
  * Manages persistent (file-based) history log for any purposes.
+ * <p>
+ * In journaled mode ({@link #setJournaled(boolean)}) save only appends the changes made since the
+ * last save to a journal file, and the full log is rewritten in the background once the journal
+ * grows past the compaction threshold.
+ * <p>
+ * Saves never write over the live file: a new file is written, fsynced and atomically moved into
+ * place. {@link #enableAutoFlush(long, TimeUnit, int)} moves saving to a background writer that
+ * batches changes, and {@link #flush()} returns a future for callers that need durability.
+ * Methods are synchronized so the background writer can snapshot changes safely.
+ * <p>
+ * Logs can be saved in {@link Format#BINARY} ({@link #setFormat(Format)}), which stores a
+ * fingerprint table next to the entries. A binary log without pending journal records is only
+ * mapped on open, and membership checks are answered from the table until the first change
+ * loads the entries. The format of an existing log is detected when it is read.
+ * <p>
+ * {@link #enableFilter(double)} puts a counting Bloom filter in front of membership checks so
+ * entries that are not in history, the common case when deduplicating, are rejected with a few
+ * bit probes.
+ * <p>
+ * {@link #setEvictionPolicy(EvictionPolicy)} adds LRU ordering, time to live and a byte cap to the
+ * max entry count. Entry timestamps are kept in a ".meta" file next to the log. Policies that
+ * depend on them save the full log instead of appending to the journal, since the journal does
+ * not record accesses or times.
+ * <p>
+ * {@link #findByPrefix(String, int)} and {@link #findContaining(String, int)} scan the entries, or
+ * use a prefix and trigram index kept up to date on every change once
+ * {@link #enableQueryIndex()} is called.
+ * <p>
+ * For logs too large to hold in memory, {@link #streamFile(String)} reads entries straight from
+ * the file with a fixed-size buffer, and {@link #openLazily(String, String, int, boolean)} defers
+ * reading the log until it is first used.
  *
  * @author Tony Hsu
  */
@@ -18,13 +59,70 @@ public class HistoryLog implements Logger {
     public static final int DEFAULT_MAX_LOG_LENGTH = 1000;
     public static final String DEFAULT_LOG_NAME = ".log.txt";
     public static final boolean DEFAULT_ALLOW_DUPS = false;
+
+    /**
+     * On-disk layout of the log file. The journal is always text.
+     */
+    public enum Format {
+        /**
+         * One entry per line in the log charset
+         */
+        TEXT,
+        /**
+         * Length-prefixed UTF-8 entries followed by a fingerprint table
+         */
+        BINARY
+    }
+
+    /**
+     * Single background thread shared by all logs for journal compaction
+     */
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "HistoryLog-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    /**
+     * Single background thread shared by all logs for auto flush
+     */
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "HistoryLog-flusher");
+        t.setDaemon(true);
+        return t;
+    });
     private String logName; // log name
     private String logPath; // path of log
     private int logSize; // max number of entries
-    private LinkedList<String> list;
-    private HashSet<String> dupCheck;
+    private HistoryIndex entries; // insertion ordered entries with O(1) lookup
     private boolean allowDups;
     private Charset charset;
+    private HistoryJournal journal;
+    private boolean journaled;
+    private List<String> pendingRecords; // journal records not yet saved
+    private boolean unjournaledChanges; // changes made while not journaled, needs a full save
+    private int journalRecords; // records in journal since last snapshot
+    private int compactionThreshold;
+    private Future<?> compaction;
+    private final Object flushLock = new Object(); // serializes disk writes
+    private CompletableFuture<Void> pendingFlush; // shared by flush callers until the write starts
+    private ScheduledFuture<?> autoFlushTask;
+    private int autoFlushThreshold; // 0 when auto flush is off
+    private int changesSinceFlush;
+    private Format format;
+    private BinaryHistoryFile base; // mapped binary log not yet loaded into entries
+    private final CompositeKey lookupKey = new CompositeKey(); // reused under the instance lock
+    private boolean accessOrder; // LRU
+    private long timeToLive; // millis, 0 for none
+    private long maxBytes; // 0 for none
+    private long totalBytes; // UTF-8 size of entries, only tracked with maxBytes
+    private HistoryQueryIndex queryIndex; // null when disabled
+    private CountingBloomFilter filter; // null when disabled
+    private long filterChecks;
+    private long filterRejected;
+    private long filterFalsePositives;
+    private boolean opened; // log file read in
+    private Format openFormat; // set before a lazily opened log was read
+    private EvictionPolicy openPolicy; // set before a lazily opened log was read
 
     /**
      * Initializes and reads in log file.
@@ -81,15 +179,114 @@ public class HistoryLog implements Logger {
      * @throws IOException
      */
     public HistoryLog(String srcPath, String logName, int logSize, boolean allowDups) throws IOException {
-        list = new LinkedList<String>();
-        dupCheck = new HashSet<String>();
+        this(srcPath, logName, logSize, allowDups, 0);
+    }
+
+    /**
+     * Initializes and reads in log file.
+     *
+     * @param srcPath         Directory to store/read log file
+     * @param logName         Name of log
+     * @param logSize         Max entry size to store
+     * @param allowDups       allow same entries to be added
+     * @param initialCapacity Expected number of entries, presizes the index so large logs avoid rehashing
+     * @throws IOException
+     */
+    public HistoryLog(String srcPath, String logName, int logSize, boolean allowDups, int initialCapacity) throws IOException {
+        this(srcPath, logName, logSize, allowDups, initialCapacity, false);
+    }
+
+    private HistoryLog(String srcPath, String logName, int logSize, boolean allowDups, int initialCapacity, boolean lazy) throws IOException {
+        entries = new HistoryIndex(initialCapacity);
         this.logName = logName;
         this.logSize = logSize;
         this.allowDups = allowDups;
         // append file separator if not found in srcPath
         logPath = srcPath + (srcPath.endsWith(File.separator) ? "" : File.separator) + logName;
         charset = Charset.forName("UTF-8");
-        readInFile();
+        journal = new HistoryJournal(logPath, charset);
+        pendingRecords = new ArrayList<String>();
+        compactionThreshold = logSize;
+        format = Format.TEXT;
+        if(!lazy) {
+            readInFile();
+            opened = true;
+        }
+    }
+
+    /**
+     * Creates a log that reads in its file on first use instead of on creation, e.g. the first
+     * membership check. Settings, including format, eviction policy and query index, can be
+     * applied before then and take effect once the file is read. Errors reading the file are
+     * thrown as {@link UncheckedIOException} from the first use.
+     *
+     * @param srcPath   Directory to store/read log file
+     * @param logName   Name of log
+     * @param logSize   Max entry size to store
+     * @param allowDups allow same entries to be added
+     * @return Unopened log
+     */
+    public static HistoryLog openLazily(String srcPath, String logName, int logSize, boolean allowDups) {
+        try {
+            return new HistoryLog(srcPath, logName, logSize, allowDups, 0, true);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e); // nothing is read until first use
+        }
+    }
+
+    /**
+     * Streams entries of a log file, oldest first, without loading them. Only a read buffer and the
+     * current entry are held in memory, so huge logs can be filtered and aggregated. Text and
+     * binary files are detected. Pending journal records are not included, save or compact the log
+     * first. Close the stream to release the file.
+     *
+     * @param path Path of log file
+     * @return Lazy stream of entries
+     * @throws IOException
+     */
+    public static Stream<String> streamFile(String path) throws IOException {
+        return streamFile(path, Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Streams entries of a log file, oldest first, without loading them.
+     *
+     * @param path    Path of log file
+     * @param charset {@link Charset} of a text log, binary logs are always UTF-8
+     * @return Lazy stream of entries
+     * @throws IOException
+     * @see #streamFile(String)
+     */
+    public static Stream<String> streamFile(String path, Charset charset) throws IOException {
+        return new HistoryFileReader(Paths.get(path), charset).stream();
+    }
+
+    /**
+     * Reads in a lazily opened log. Must be called before the log is read or changed.
+     */
+    private void ensureOpen() {
+        if(!opened) {
+            try {
+                readInFile();
+            }
+            catch (IOException e) {
+                entries.clear();
+                base = null;
+                throw new UncheckedIOException("Unable to read " + logPath, e);
+            }
+            opened = true;
+            rebuildFilter();
+            rebuildQueryIndex();
+            if(openFormat != null) {
+                setFormat(openFormat);
+                openFormat = null;
+            }
+            if(openPolicy != null) {
+                setEvictionPolicy(openPolicy);
+                openPolicy = null;
+            }
+        }
     }
 
     /**
@@ -98,18 +295,385 @@ public class HistoryLog implements Logger {
      * @throws IOException
      */
     private void readInFile() throws IOException {
-        if(new File(logPath).exists()) {
-            BufferedReader sc = new BufferedReader(
-                new InputStreamReader(
-                    new FileInputStream(new File(logPath)), charset.newDecoder()));
-            String line = sc.readLine();
-            while(line != null) {
-                list.add(line);
-                dupCheck.add(line);
-                line = sc.readLine();
+        journal.recover();
+        if(BinaryHistoryFile.isBinary(journal.getSnapshot())) {
+            format = Format.BINARY;
+            journal.setBinary(true);
+            if(!journal.hasJournal()) {
+                BinaryHistoryFile file = BinaryHistoryFile.open(journal.getSnapshot());
+                if(file != null && file.size() <= logSize) {
+                    // defer loading until the first change
+                    base = file;
+                    return;
+                }
+            }
+        }
+        journal.readSnapshot(line -> entries.add(line));
+        // replay without eviction, evictions were journaled as removals
+        journalRecords = journal.replay((op, entry) -> {
+            if(op == HistoryJournal.ADD) {
+                entries.add(entry);
+            }
+            else {
+                entries.remove(entry);
+            }
+        });
+        loadTimes();
+        while(entries.size() > logSize) {
+            entries.removeOldest();
+            unjournaledChanges = true;
+        }
+    }
+
+    /**
+     * Restores entry timestamps from the meta file, entries without valid ones count as added now.
+     */
+    private void loadTimes() {
+        long[] times = null;
+        try {
+            times = journal.readMeta(entries.size(), entriesCheck(entries.asList()));
+        }
+        catch (IOException e) {
+            error("Unable to read " + logPath + ".meta: " + e);
+        }
+        entries.setTimes(times, System.currentTimeMillis());
+    }
+
+    /**
+     * @return Value identifying a list of entries, stored with their timestamps
+     */
+    private static long entriesCheck(List<String> list) {
+        long check = list.size();
+        for(String entry : list) {
+            check = check * 31 + Fingerprint.of(entry);
+        }
+        return check;
+    }
+
+    /**
+     * Loads a deferred binary log into entries. Must be called before entries are read or changed.
+     */
+    private void ensureLoaded() {
+        ensureOpen();
+        if(base != null) {
+            BinaryHistoryFile file = base;
+            base = null;
+            file.forEach(entries::add);
+            loadTimes();
+            rebuildFilter(); // table held distinct keys only, now count every occurrence
+            rebuildQueryIndex();
+        }
+    }
+
+    /**
+     * Override how entries are evicted. logSize still caps the number of entries.
+     * Default is {@link EvictionPolicy#fifo()}
+     *
+     * @param policy {@link EvictionPolicy}, read once
+     * @return
+     */
+    public synchronized HistoryLog setEvictionPolicy(EvictionPolicy policy) {
+        if(!opened) {
+            openPolicy = policy;
+            return this;
+        }
+        ensureLoaded();
+        boolean hadMetadata = keepsMetadata();
+        accessOrder = policy.isAccessOrder();
+        timeToLive = policy.getTimeToLive();
+        maxBytes = policy.getMaxBytes();
+        if(keepsMetadata() != hadMetadata) {
+            unjournaledChanges = true; // switch between journal and full saves
+        }
+        totalBytes = 0;
+        if(maxBytes > 0) {
+            for(String entry : entries.asList()) {
+                totalBytes += utf8Length(entry);
+            }
+        }
+        expire();
+        enforceLimits();
+        return this;
+    }
+
+    /**
+     * @return True if the policy needs entry timestamps persisted
+     */
+    private boolean keepsMetadata() {
+        return accessOrder || timeToLive > 0;
+    }
+
+    /**
+     * Evicts entries past their time to live. Entries are ordered by time, so only the head is checked.
+     */
+    private void expire() {
+        if(timeToLive > 0) {
+            long cutoff = System.currentTimeMillis() - timeToLive;
+            while(entries.peekOldestTime() < cutoff) {
+                evictOldest();
+            }
+        }
+    }
+
+    /**
+     * Evicts oldest entries until count and byte limits hold.
+     */
+    private void enforceLimits() {
+        while(entries.size() > logSize || (maxBytes > 0 && totalBytes > maxBytes && entries.size() > 0)) {
+            evictOldest();
+        }
+    }
+
+    /**
+     * @return Number of bytes str takes in UTF-8
+     */
+    static int utf8Length(String str) {
+        int length = 0;
+        for(int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if(c < 0x80) {
+                length++;
+            }
+            else if(c < 0x800) {
+                length += 2;
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                i++;
+            }
+            else {
+                length += 3;
             }
-            sc.close();
         }
+        return length;
+    }
+
+    /**
+     * Keep a prefix and substring index of entries, updated on every add, removal and eviction.
+     * Loads a mapped binary log.
+     *
+     * @return
+     */
+    public synchronized HistoryLog enableQueryIndex() {
+        queryIndex = new HistoryQueryIndex();
+        if(!opened) {
+            return this; // built when the log is read
+        }
+        ensureLoaded();
+        rebuildQueryIndex();
+        return this;
+    }
+
+    /**
+     * Drop the query index, queries fall back to scanning entries.
+     *
+     * @return
+     */
+    public synchronized HistoryLog disableQueryIndex() {
+        queryIndex = null;
+        return this;
+    }
+
+    /**
+     * Finds distinct entries starting with prefix. Sorted when the query index is enabled,
+     * otherwise oldest first. Results are collected before returning, so the log can change
+     * while the stream is consumed.
+     *
+     * @param prefix Required start of each entry
+     * @param limit  Max number of results
+     * @return Stream of matching entries
+     */
+    public synchronized Stream<String> findByPrefix(String prefix, int limit) {
+        ensureLoaded();
+        expire();
+        Stream<String> matches = queryIndex != null ? queryIndex.startingWith(prefix)
+            : entries.asList().stream().filter(entry -> entry.startsWith(prefix)).distinct();
+        return matches.limit(limit).collect(Collectors.toList()).stream();
+    }
+
+    /**
+     * Finds distinct entries containing token. Unordered when the query index is enabled,
+     * otherwise oldest first. Results are collected before returning, so the log can change
+     * while the stream is consumed.
+     *
+     * @param token Required substring of each entry
+     * @param limit Max number of results
+     * @return Stream of matching entries
+     */
+    public synchronized Stream<String> findContaining(String token, int limit) {
+        ensureLoaded();
+        expire();
+        Stream<String> matches = queryIndex != null ? queryIndex.containing(token)
+            : entries.asList().stream().filter(entry -> entry.contains(token)).distinct();
+        return matches.limit(limit).collect(Collectors.toList()).stream();
+    }
+
+    private void rebuildQueryIndex() {
+        if(queryIndex == null) {
+            return;
+        }
+        queryIndex.clear();
+        for(String entry : entries.asList()) {
+            queryIndex.add(entry);
+        }
+    }
+
+    /**
+     * Put a counting Bloom filter in front of membership checks, sized for logSize entries.
+     * Costs about 4 bits per counter, e.g. 1.2mb per million entries at 1%.
+     *
+     * @param falsePositiveRate Target rate of checks passed on to the index for absent entries
+     * @return
+     */
+    public synchronized HistoryLog enableFilter(double falsePositiveRate) {
+        filter = new CountingBloomFilter(logSize, falsePositiveRate);
+        filterChecks = filterRejected = filterFalsePositives = 0;
+        rebuildFilter();
+        return this;
+    }
+
+    /**
+     * Remove the membership filter.
+     *
+     * @return
+     */
+    public synchronized HistoryLog disableFilter() {
+        filter = null;
+        return this;
+    }
+
+    /**
+     * @return {@link FilterStatistics} since the filter was enabled, null if disabled
+     */
+    public synchronized FilterStatistics getFilterStatistics() {
+        if(filter == null) {
+            return null;
+        }
+        return new FilterStatistics(filterChecks, filterRejected, filterFalsePositives, filter.getHashes(), filter.getSizeInBytes());
+    }
+
+    private void rebuildFilter() {
+        if(filter == null) {
+            return;
+        }
+        filter.clear();
+        if(base != null) {
+            base.forEachFingerprint(filter::add);
+        }
+        else {
+            for(String entry : entries.asList()) {
+                filter.add(Fingerprint.of(entry));
+            }
+        }
+    }
+
+    /**
+     * Membership check through the filter.
+     *
+     * @param key         Entry to find
+     * @param fingerprint {@link Fingerprint} of key, only used when the filter is enabled
+     * @return True if key is in history
+     */
+    private boolean containsKey(CompositeKey key, long fingerprint) {
+        expire();
+        if(filter != null) {
+            filterChecks++;
+            if(!filter.mightContain(fingerprint)) {
+                filterRejected++;
+                return false;
+            }
+        }
+        boolean found;
+        if(base != null) {
+            found = base.contains(key, fingerprint);
+        }
+        else {
+            HistoryIndex.Node node = entries.findNewest(key);
+            found = node != null;
+            if(found && accessOrder) {
+                entries.touch(node, System.currentTimeMillis());
+                unjournaledChanges = true;
+            }
+        }
+        if(filter != null && !found) {
+            filterFalsePositives++;
+        }
+        return found;
+    }
+
+    private boolean lookup(CompositeKey key) {
+        ensureOpen(); // may map a binary log, which needs the fingerprint
+        return containsKey(key, fingerprintFor(key));
+    }
+
+    /**
+     * @return Fingerprint of key, 0 when neither the filter nor a mapped log needs it
+     */
+    private long fingerprintFor(CompositeKey key) {
+        return filter == null && base == null ? 0 : Fingerprint.of(key);
+    }
+
+    /**
+     * Evicts oldest entry, keeping the filter in sync.
+     */
+    private void evictOldest() {
+        String evicted = entries.removeOldest();
+        if(filter != null) {
+            filter.remove(Fingerprint.of(evicted));
+        }
+        if(queryIndex != null) {
+            queryIndex.remove(evicted);
+        }
+        if(maxBytes > 0) {
+            totalBytes -= utf8Length(evicted);
+        }
+        record(HistoryJournal.REMOVE, evicted);
+    }
+
+    /**
+     * Override format of the log file. The next save rewrites the log in this format.
+     * Default is the format of the existing log, or {@link Format#TEXT} for a new one
+     *
+     * @param format {@link Format}
+     * @return
+     */
+    public synchronized HistoryLog setFormat(Format format) {
+        if(!opened) {
+            openFormat = format; // format of the existing log is only known once read
+            return this;
+        }
+        if(this.format != format) {
+            ensureLoaded();
+            this.format = format;
+            journal.setBinary(format == Format.BINARY);
+            unjournaledChanges = true;
+        }
+        return this;
+    }
+
+    /**
+     * @return {@link Format} used when saving, detected once a lazily opened log is read unless set
+     */
+    public Format getFormat() {
+        return openFormat != null ? openFormat : format;
+    }
+
+    /**
+     * Converts a log file to another format. Only the log file is converted, save or compact the
+     * log first so its journal is included.
+     *
+     * @param source Path of existing log, text or binary
+     * @param target Path to write
+     * @param format {@link Format} of target
+     * @throws IOException
+     */
+    public static void convert(String source, String target, Format format) throws IOException {
+        Charset utf8 = Charset.forName("UTF-8");
+        List<String> list = new ArrayList<String>();
+        new HistoryJournal(source, utf8).readSnapshot(list::add);
+        HistoryJournal out = new HistoryJournal(target, utf8);
+        out.setBinary(format == Format.BINARY);
+        out.writeSnapshot(list);
     }
 
     /**
@@ -119,7 +683,33 @@ public class HistoryLog implements Logger {
      * @return
      */
     public HistoryLog setCharset(Charset charset) {
-        charset = charset;
+        this.charset = charset;
+        journal.setCharset(charset);
+        return this;
+    }
+
+    /**
+     * Enable journaled saves. Save then appends only entries added or removed since the last save,
+     * and the log file is rewritten in the background once the journal reaches the compaction
+     * threshold. Default is off
+     *
+     * @param journaled True to enable
+     * @return
+     */
+    public HistoryLog setJournaled(boolean journaled) {
+        this.journaled = journaled;
+        return this;
+    }
+
+    /**
+     * Override number of journal records that triggers a background rewrite of the log.
+     * Default is the max entry size
+     *
+     * @param records Number of records
+     * @return
+     */
+    public HistoryLog setCompactionThreshold(int records) {
+        compactionThreshold = records;
         return this;
     }
 
@@ -133,15 +723,25 @@ public class HistoryLog implements Logger {
      * @param str      String to write
      * @param modifier Extra value to add to string
      */
-    public void add(String str, String modifier) {
+    public synchronized void add(String str, String modifier) {
         // if allow dups or don't allow dups and doesn't contain item
-        if(allowDups || !dupCheck.contains(str + modifier)) {
-            list.add(str + modifier);
-            dupCheck.add(str + modifier);
-
-            if(list.size() > logSize) {
-                dupCheck.remove(list.remove());
+        ensureLoaded();
+        CompositeKey key = lookupKey.set(str).append(modifier);
+        long fingerprint = fingerprintFor(key);
+        if(allowDups || !containsKey(key, fingerprint)) {
+            String entry = key.toString();
+            entries.add(entry, System.currentTimeMillis());
+            if(filter != null) {
+                filter.add(fingerprint);
             }
+            if(queryIndex != null) {
+                queryIndex.add(entry);
+            }
+            if(maxBytes > 0) {
+                totalBytes += utf8Length(entry);
+            }
+            record(HistoryJournal.ADD, entry);
+            enforceLimits();
         }
     }
 
@@ -151,15 +751,227 @@ public class HistoryLog implements Logger {
      * @throws IOException
      */
     public void save() throws IOException {
-        if(list.isEmpty()) {
+        synchronized(flushLock) {
+            writeChanges(false);
+        }
+    }
+
+    /**
+     * Rewrite the log file with every entry and clear the journal.
+     *
+     * @throws IOException
+     */
+    public void compact() throws IOException {
+        synchronized(flushLock) {
+            writeChanges(true);
+        }
+    }
+
+    /**
+     * Save and wait for a background compaction started by this or an earlier save, so no write
+     * to the log files is running once this returns.
+     *
+     * @throws IOException
+     */
+    void saveAndAwait() throws IOException {
+        synchronized(flushLock) {
+            writeChanges(false);
+            awaitCompaction();
+        }
+    }
+
+    /**
+     * Write pending changes on the background writer. Calls made before the write starts share
+     * the same future, so a burst of callers results in a single write (group commit).
+     *
+     * @return Future completed once the changes are durable on disk
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        if(pendingFlush == null) {
+            pendingFlush = new CompletableFuture<Void>();
+            FLUSHER.execute(this::runFlush);
+        }
+        return pendingFlush;
+    }
+
+    /**
+     * Flush automatically in the background every interval, or as soon as entryThreshold changes
+     * are pending. Callers of add/remove never wait for disk. Call {@link #disableAutoFlush()}
+     * before discarding the log.
+     *
+     * @param interval       Time between flushes of pending changes
+     * @param unit           {@link TimeUnit} of interval
+     * @param entryThreshold Number of changes that triggers an early flush
+     * @return
+     */
+    public synchronized HistoryLog enableAutoFlush(long interval, TimeUnit unit, int entryThreshold) {
+        disableAutoFlush();
+        autoFlushThreshold = Math.max(1, entryThreshold);
+        autoFlushTask = FLUSHER.scheduleWithFixedDelay(() -> {
+            if(isDirty()) {
+                flush();
+            }
+        }, interval, interval, unit);
+        return this;
+    }
+
+    /**
+     * Stop automatic flushing. Pending changes are kept until the next save or flush.
+     *
+     * @return
+     */
+    public synchronized HistoryLog disableAutoFlush() {
+        if(autoFlushTask != null) {
+            autoFlushTask.cancel(false);
+            autoFlushTask = null;
+        }
+        autoFlushThreshold = 0;
+        return this;
+    }
+
+    private void runFlush() {
+        CompletableFuture<Void> done;
+        synchronized(this) {
+            done = pendingFlush;
+            pendingFlush = null;
+        }
+        try {
+            synchronized(flushLock) {
+                writeChanges(false);
+            }
+            done.complete(null);
+        }
+        catch (IOException | RuntimeException e) {
+            error("Flush failed for " + logPath + ": " + e);
+            done.completeExceptionally(e);
+        }
+    }
+
+    private synchronized boolean isDirty() {
+        return unjournaledChanges || !pendingRecords.isEmpty();
+    }
+
+    /**
+     * Captures changes while holding the entry lock, then writes them holding only flushLock so
+     * add/remove are never blocked by disk I/O. Caller must hold flushLock.
+     *
+     * @param fullSnapshot True to rewrite the log even in journaled mode
+     * @throws IOException
+     */
+    private void writeChanges(boolean fullSnapshot) throws IOException {
+        List<String> records = null;
+        List<String> snapshot = null;
+        long[] times = null;
+        synchronized(this) {
+            if(!opened) {
+                return; // never used, nothing changed
+            }
+            expire();
+            changesSinceFlush = 0;
+            if(journaled && !unjournaledChanges && !fullSnapshot) {
+                if(pendingRecords.isEmpty()) {
+                    return;
+                }
+                records = pendingRecords;
+                pendingRecords = new ArrayList<String>();
+                if(journalRecords + records.size() >= compactionThreshold) {
+                    // copy now so the snapshot matches the journal exactly
+                    snapshot = new ArrayList<String>(entries.asList());
+                }
+            }
+            else {
+                if(base != null) {
+                    return; // unchanged since it was mapped
+                }
+                if(!fullSnapshot && entries.size() == 0 && !journal.hasJournal()) {
+                    return;
+                }
+                snapshot = new ArrayList<String>(entries.asList());
+                if(keepsMetadata()) {
+                    times = entries.times();
+                }
+                pendingRecords.clear();
+                unjournaledChanges = false;
+            }
+        }
+
+        try {
+            if(records != null) {
+                journal.append(records);
+                journalRecords += records.size();
+                if(snapshot != null) {
+                    compactInBackground(snapshot);
+                }
+            }
+            else {
+                awaitCompaction();
+                if(times != null) {
+                    journal.writeMeta(times, entriesCheck(snapshot));
+                }
+                journal.rotate();
+                journal.writeSnapshot(snapshot);
+                journalRecords = 0;
+            }
+        }
+        catch (IOException e) {
+            // captured changes are no longer pending, next save rewrites everything
+            synchronized(this) {
+                unjournaledChanges = true;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Rotate journal on the caller's thread and write the snapshot on the compactor thread.
+     * Caller must hold flushLock.
+     *
+     * @param snapshot Copy of entries matching the journal being rotated
+     * @throws IOException
+     */
+    private void compactInBackground(List<String> snapshot) throws IOException {
+        awaitCompaction();
+        journal.rotate();
+        journalRecords = 0;
+        compaction = COMPACTOR.submit(() -> {
+            journal.writeSnapshot(snapshot);
+            return null;
+        });
+    }
+
+    /**
+     * Wait for a running compaction. A failed compaction leaves its journal in place and is retried
+     * by the next one, so failures are only logged.
+     */
+    private void awaitCompaction() {
+        if(compaction == null) {
             return;
         }
-        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(logPath)), charset.newEncoder()));
-        for(String str : list) {
-            bw.write(str);
-            bw.newLine();
+        try {
+            compaction.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            error("Compaction failed for " + logPath + ": " + e.getCause());
+        }
+        compaction = null;
+    }
+
+    /**
+     * Track a change for the next journaled save.
+     */
+    private void record(char op, String entry) {
+        if(journaled && !keepsMetadata()) {
+            pendingRecords.add(HistoryJournal.encode(op, entry));
+        }
+        else {
+            unjournaledChanges = true;
+        }
+        if(autoFlushThreshold > 0 && ++changesSinceFlush >= autoFlushThreshold) {
+            flush();
         }
-        bw.close();
     }
 
     /**
@@ -169,7 +981,7 @@ public class HistoryLog implements Logger {
      * @return True if string found in history
      */
     public boolean contains(String str) {
-        return isInHistory(str, "");
+        return isInHistory(str);
     }
 
     /**
@@ -194,6 +1006,28 @@ public class HistoryLog implements Logger {
         return isInHistory(str, modifier);
     }
 
+    /**
+     * Checks if string is in history.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean contains(String str, int modifier) {
+        return isInHistory(str, (long)modifier);
+    }
+
+    /**
+     * Checks if string is in history.
+     *
+     * @param str      String to check
+     * @param modifier Character to add string, not its code
+     * @return True if string found in history
+     */
+    public boolean contains(String str, char modifier) {
+        return isInHistory(str, modifier);
+    }
+
     /**
      * Checks if string is in history.
      *
@@ -211,38 +1045,113 @@ public class HistoryLog implements Logger {
      * @param str String to check
      * @return True if string found in history
      */
-    public boolean isInHistory(String str) {
-        return isInHistory(str, "");
-    }
-
-    //    /**
-    //     * Checks if string is in history.
-    //     *
-    //     * @param str      String to check
-    //     * @param modifier Extra value to add string
-    //     * @return True if string found in history
-    //     */
-    //    public boolean isInHistory(String str, long modifier) {
-    //        return isInHistory(str, modifier);
-    //    }
-
-    //    /**
-    //     * Checks if string is in history.
-    //     *
-    //     * @param str      String to check
-    //     * @param modifier Extra value to add string
-    //     * @return True if string found in history
-    //     */
-    //    public boolean isInHistory(String str, String modifier) {
-    //        return isInHistory(str, modifier);
-    //    }
-
-    public boolean isInHistory(String str, Object... modifiers) {
-        StringBuilder sb = new StringBuilder();
-        for(Object modifier : modifiers) {
-            sb.append(modifier.toString());
-        }
-        return dupCheck.contains(str + sb.toString());
+    public synchronized boolean isInHistory(String str) {
+        CompositeKey key = lookupKey.set(str);
+        return lookup(key);
+    }
+
+    /**
+     * Checks if string is in history. Does not allocate.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history
+     */
+    public synchronized boolean isInHistory(String str, String modifier) {
+        CompositeKey key = lookupKey.set(str).append(modifier);
+        return lookup(key);
+    }
+
+    /**
+     * Checks if string is in history. Does not allocate.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history
+     */
+    public synchronized boolean isInHistory(String str, long modifier) {
+        CompositeKey key = lookupKey.set(str).append(modifier);
+        return lookup(key);
+    }
+
+    /**
+     * Checks if string is in history. Does not allocate.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean isInHistory(String str, int modifier) {
+        return isInHistory(str, (long)modifier);
+    }
+
+    /**
+     * Checks if string is in history. Does not allocate.
+     *
+     * @param str      String to check
+     * @param modifier Character to add string, not its code
+     * @return True if string found in history
+     */
+    public synchronized boolean isInHistory(String str, char modifier) {
+        CompositeKey key = lookupKey.set(str).append(modifier);
+        return lookup(key);
+    }
+
+    /**
+     * Checks if string is in history. Only the varargs array and modifiers other than strings and
+     * integral numbers allocate.
+     *
+     * @param str       String to check
+     * @param modifiers Extra value to add string
+     * @return True if string found in history
+     */
+    public synchronized boolean isInHistory(String str, Object... modifiers) {
+        CompositeKey key = lookupKey.set(str).append(modifiers);
+        return lookup(key);
+    }
+
+    /**
+     * Removes oldest occurrence of specified string from history list. Does not allocate.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history and removed
+     */
+    public synchronized boolean remove(String str, String modifier) {
+        return removeKey(lookupKey.set(str).append(modifier));
+    }
+
+    /**
+     * Removes oldest occurrence of specified string from history list. Does not allocate.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history and removed
+     */
+    public synchronized boolean remove(String str, long modifier) {
+        return removeKey(lookupKey.set(str).append(modifier));
+    }
+
+    /**
+     * Removes oldest occurrence of specified string from history list. Does not allocate.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history and removed
+     */
+    public boolean remove(String str, int modifier) {
+        return remove(str, (long)modifier);
+    }
+
+    /**
+     * Removes oldest occurrence of specified string from history list. Does not allocate.
+     *
+     * @param str      String to check
+     * @param modifier Character to add string, not its code
+     * @return True if string found in history and removed
+     */
+    public synchronized boolean remove(String str, char modifier) {
+        return removeKey(lookupKey.set(str).append(modifier));
     }
 
     /**
@@ -252,13 +1161,43 @@ public class HistoryLog implements Logger {
      * @param modifiers Extra value to add string
      * @return True if string found in history and removed
      */
-    public boolean remove(String str, Object... modifiers) {
-        StringBuilder sb = new StringBuilder();
+    public synchronized boolean remove(String str, Object... modifiers) {
+        return removeKey(lookupKey.set(str).append(modifiers));
+    }
+
+    private boolean removeKey(CompositeKey key) {
+        ensureLoaded();
+        expire();
+        String removed = entries.remove(key);
+        if(removed == null) {
+            return false;
+        }
+        if(filter != null) {
+            filter.remove(Fingerprint.of(removed));
+        }
+        if(queryIndex != null) {
+            queryIndex.remove(removed);
+        }
+        if(maxBytes > 0) {
+            totalBytes -= utf8Length(removed);
+        }
+        record(HistoryJournal.REMOVE, removed);
+        return true;
+    }
+
+    /**
+     * Builds the stored entry from a string and its modifiers.
+     *
+     * @param str       String
+     * @param modifiers Extra values appended in order
+     * @return Entry as written to the log
+     */
+    static String toKey(String str, Object... modifiers) {
+        StringBuilder sb = new StringBuilder(str);
         for(Object modifier : modifiers) {
             sb.append(modifier.toString());
         }
-        dupCheck.remove(str + sb.toString());
-        return list.remove(str + sb.toString());
+        return sb.toString();
     }
 
     /**
@@ -280,11 +1219,13 @@ public class HistoryLog implements Logger {
     }
 
     /**
-     * Returns list of values read from file.
+     * Returns list of values, oldest first. The list is a read-only live view.
      *
      * @return
      */
-    public List<String> getSavedList() {
-        return list;
+    public synchronized List<String> getSavedList() {
+        ensureLoaded();
+        expire();
+        return entries.asList();
     }
 }
@@ -0,0 +1,131 @@
+package org.tonyhsu17.utilities;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+
+/**
+ * Secondary index over distinct {@link HistoryLog} entries for prefix and substring queries.
+ * <p>
+ * Prefix queries walk a sorted map from the first key at or after the prefix and stop at the first
+ * key that no longer matches. Substring queries look up the trigram (three chars packed in a long)
+ * posting set of every trigram in the token, then scan the smallest one and verify each key, so
+ * only keys sharing the rarest trigram are checked. Tokens shorter than three chars fall back to a
+ * scan of distinct keys.
+ * <p>
+ * Streams are lazy views, they must be consumed before the index changes.
+ *
+ * @author Tony Hsu
+ */
+final class HistoryQueryIndex {
+    private final TreeMap<String, int[]> counts = new TreeMap<>(); // occurrences per key
+    private final Map<Long, Set<String>> postings = new HashMap<>(); // keys containing each trigram
+
+    /**
+     * Indexes an occurrence of key.
+     */
+    void add(String key) {
+        int[] count = counts.get(key);
+        if(count != null) {
+            count[0]++;
+            return;
+        }
+        counts.put(key, new int[] {1});
+        for(int i = 0; i + 3 <= key.length(); i++) {
+            postings.computeIfAbsent(trigram(key, i), k -> new HashSet<>(4)).add(key);
+        }
+    }
+
+    /**
+     * Removes an occurrence of key, dropping it from the index with its last occurrence.
+     */
+    void remove(String key) {
+        int[] count = counts.get(key);
+        if(count == null || --count[0] > 0) {
+            return;
+        }
+        counts.remove(key);
+        for(int i = 0; i + 3 <= key.length(); i++) {
+            Long trigram = trigram(key, i);
+            Set<String> keys = postings.get(trigram);
+            if(keys != null && keys.remove(key) && keys.isEmpty()) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    void clear() {
+        counts.clear();
+        postings.clear();
+    }
+
+    /**
+     * @param prefix Required start of each key
+     * @return Distinct keys starting with prefix, in sorted order
+     */
+    Stream<String> startingWith(String prefix) {
+        Iterator<String> tail = counts.tailMap(prefix, true).keySet().iterator();
+        Iterator<String> matching = new Iterator<String>() {
+            private String next = advance();
+
+            private String advance() {
+                if(tail.hasNext()) {
+                    String key = tail.next();
+                    if(key.startsWith(prefix)) {
+                        return key;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if(next == null) {
+                    throw new NoSuchElementException();
+                }
+                String key = next;
+                next = advance();
+                return key;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(matching, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * @param token Required substring of each key
+     * @return Distinct keys containing token, unordered
+     */
+    Stream<String> containing(String token) {
+        if(token.length() < 3) {
+            return counts.keySet().stream().filter(key -> key.contains(token));
+        }
+        Set<String> smallest = null;
+        for(int i = 0; i + 3 <= token.length(); i++) {
+            Set<String> keys = postings.getOrDefault(trigram(token, i), Collections.<String>emptySet());
+            if(smallest == null || keys.size() < smallest.size()) {
+                smallest = keys;
+            }
+        }
+        return smallest.stream().filter(key -> key.contains(token));
+    }
+
+    private static Long trigram(String s, int i) {
+        return ((long)s.charAt(i) << 32) | ((long)s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
@@ -0,0 +1,62 @@
+package org.tonyhsu17.utilities;
+
+/**
+ * Snapshot of the mailbox counters of an {@link EventCenter} subscriber.
+ *
+ * @author Tony Hsu
+ */
+public class MailboxStatistics {
+    private final int depth;
+    private final int capacity;
+    private final long delivered;
+    private final long failed;
+    private final long dropped;
+
+    public MailboxStatistics(int depth, int capacity, long delivered, long failed, long dropped) {
+        this.depth = depth;
+        this.capacity = capacity;
+        this.delivered = delivered;
+        this.failed = failed;
+        this.dropped = dropped;
+    }
+
+    /**
+     * @return Approximate number of events waiting for the subscriber
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return Max events the mailbox holds, 0 if it has not been used
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Number of events the subscriber handled without throwing
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return Number of events the subscriber threw on
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return Number of events dropped because the mailbox was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d queued, %d delivered, %d failed, %d dropped", depth, capacity, delivered, failed, dropped);
+    }
+}
@@ -0,0 +1,524 @@
+package org.tonyhsu17.utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+
+/**
+ * History split across several {@link HistoryLog} shard files by hash of the entry, for histories
+ * too large to load or save as a single file. Offers the same add/contains/remove/save methods.
+ * <p>
+ * Shards are loaded on first access and saved in parallel. When more than the max loaded shards
+ * are in memory, or the heap left after the last collection is above the optional memory
+ * threshold, the least recently used shard is saved and unloaded. Each shard holds
+ * logSize / shards entries and evicts on its own, so eviction order is per shard rather than global.
+ * <p>
+ * Shard files are named logName.0, logName.1, ... The shard count must stay the same for a
+ * history, otherwise entries are looked up in the wrong shard.
+ *
+ * @author Tony Hsu
+ */
+public class SegmentedHistoryLog implements Logger {
+    public static final int DEFAULT_SHARDS = 16;
+    public static final double DEFAULT_MEMORY_THRESHOLD = 1;
+    /**
+     * Threads shared by all segmented logs for saving shards in parallel
+     */
+    private static final ExecutorService SAVER = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread t = new Thread(r, "SegmentedHistoryLog-saver");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ThreadLocal<CompositeKey> KEYS = ThreadLocal.withInitial(CompositeKey::new);
+    private String srcPath;
+    private String logName;
+    private int shardSize; // max entries per shard
+    private boolean allowDups;
+    private final AtomicReferenceArray<HistoryLog> shards; // null when not loaded
+    private final AtomicReferenceArray<Future<?>> saves; // last parallel save of each shard
+    private final Object[] locks;
+    private final AtomicLongArray lastAccess;
+    private final AtomicInteger loaded;
+    private final AtomicLong accessClock; // orders shard accesses
+    private int maxLoadedShards;
+    private double memoryThreshold;
+    private boolean journaled;
+    private HistoryLog.Format format;
+    private EvictionPolicy policy;
+    private double filterRate;
+
+    /**
+     * Initializes with {@link #DEFAULT_SHARDS} shards without reading any shard.
+     *
+     * @param srcPath   Directory to store/read shard files
+     * @param logName   Name of log, shard files append their index
+     * @param logSize   Max entry size to store across all shards
+     * @param allowDups allow same entries to be added
+     */
+    public SegmentedHistoryLog(String srcPath, String logName, int logSize, boolean allowDups) {
+        this(srcPath, logName, DEFAULT_SHARDS, logSize, allowDups);
+    }
+
+    /**
+     * Initializes without reading any shard.
+     *
+     * @param srcPath   Directory to store/read shard files
+     * @param logName   Name of log, shard files append their index
+     * @param shards    Number of shards, must not change for an existing history
+     * @param logSize   Max entry size to store across all shards
+     * @param allowDups allow same entries to be added
+     */
+    public SegmentedHistoryLog(String srcPath, String logName, int shards, int logSize, boolean allowDups) {
+        if(shards <= 0) {
+            throw new IllegalArgumentException("shards must be positive: " + shards);
+        }
+        this.srcPath = srcPath;
+        this.logName = logName;
+        this.allowDups = allowDups;
+        shardSize = (logSize + shards - 1) / shards;
+        this.shards = new AtomicReferenceArray<HistoryLog>(shards);
+        saves = new AtomicReferenceArray<Future<?>>(shards);
+        locks = new Object[shards];
+        for(int i = 0; i < shards; i++) {
+            locks[i] = new Object();
+        }
+        lastAccess = new AtomicLongArray(shards);
+        accessClock = new AtomicLong();
+        loaded = new AtomicInteger();
+        maxLoadedShards = shards;
+        memoryThreshold = DEFAULT_MEMORY_THRESHOLD;
+    }
+
+    /**
+     * Override number of shards kept in memory. Default is every shard
+     *
+     * @param maxLoadedShards Max shards loaded at once
+     * @return
+     */
+    public SegmentedHistoryLog setMaxLoadedShards(int maxLoadedShards) {
+        this.maxLoadedShards = Math.max(1, maxLoadedShards);
+        return this;
+    }
+
+    /**
+     * Override fraction of max heap above which a cold shard is unloaded on each access. Heap usage
+     * is measured after the last garbage collection, so garbage does not unload shards.
+     * Default is 1, disabled
+     *
+     * @param memoryThreshold Fraction between 0 and 1, 1 to disable
+     * @return
+     */
+    public SegmentedHistoryLog setMemoryThreshold(double memoryThreshold) {
+        this.memoryThreshold = memoryThreshold;
+        return this;
+    }
+
+    /**
+     * Enable journaled saves for shards loaded from now on, see {@link HistoryLog#setJournaled(boolean)}.
+     *
+     * @param journaled True to enable
+     * @return
+     */
+    public SegmentedHistoryLog setJournaled(boolean journaled) {
+        this.journaled = journaled;
+        return this;
+    }
+
+    /**
+     * Override format for shards loaded from now on, see {@link HistoryLog#setFormat(HistoryLog.Format)}.
+     *
+     * @param format {@link HistoryLog.Format}
+     * @return
+     */
+    public SegmentedHistoryLog setFormat(HistoryLog.Format format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * Override eviction for shards loaded from now on, see {@link HistoryLog#setEvictionPolicy(EvictionPolicy)}.
+     * A byte cap applies per shard.
+     *
+     * @param policy {@link EvictionPolicy}
+     * @return
+     */
+    public SegmentedHistoryLog setEvictionPolicy(EvictionPolicy policy) {
+        this.policy = policy;
+        return this;
+    }
+
+    /**
+     * Enable membership filters for shards loaded from now on, see {@link HistoryLog#enableFilter(double)}.
+     *
+     * @param falsePositiveRate Target false positive rate
+     * @return
+     */
+    public SegmentedHistoryLog enableFilter(double falsePositiveRate) {
+        filterRate = falsePositiveRate;
+        return this;
+    }
+
+    public void add(String str) {
+        add(str, "");
+    }
+
+    /**
+     * Queue string to be written to file.
+     *
+     * @param str      String to write
+     * @param modifier Extra value to add to string
+     */
+    public void add(String str, String modifier) {
+        int index = shardFor(KEYS.get().set(str).append(modifier));
+        synchronized(locks[index]) {
+            shard(index).add(str, modifier);
+        }
+        evictColdShards(index);
+    }
+
+    /**
+     * Checks if string is in history.
+     *
+     * @param str String to check
+     * @return True if string found in history
+     */
+    public boolean contains(String str) {
+        return isInHistory(str, "");
+    }
+
+    /**
+     * Checks if string is in history.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean contains(String str, String modifier) {
+        return isInHistory(str, modifier);
+    }
+
+    /**
+     * Checks if string is in history.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean contains(String str, long modifier) {
+        int index = shardFor(KEYS.get().set(str).append(modifier));
+        boolean found;
+        synchronized(locks[index]) {
+            found = shard(index).isInHistory(str, modifier);
+        }
+        evictColdShards(index);
+        return found;
+    }
+
+    /**
+     * Checks if string is in history.
+     *
+     * @param str      String to check
+     * @param modifier Character to add string, not its code
+     * @return True if string found in history
+     */
+    public boolean contains(String str, char modifier) {
+        int index = shardFor(KEYS.get().set(str).append(modifier));
+        boolean found;
+        synchronized(locks[index]) {
+            found = shard(index).isInHistory(str, modifier);
+        }
+        evictColdShards(index);
+        return found;
+    }
+
+    /**
+     * Checks if string is in history.
+     *
+     * @param str       String to check
+     * @param modifiers Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean contains(String str, Object... modifiers) {
+        return isInHistory(str, modifiers);
+    }
+
+    /**
+     * Checks if string is in history.
+     *
+     * @param str      String to check
+     * @param modifier Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean isInHistory(String str, String modifier) {
+        int index = shardFor(KEYS.get().set(str).append(modifier));
+        boolean found;
+        synchronized(locks[index]) {
+            found = shard(index).isInHistory(str, modifier);
+        }
+        evictColdShards(index);
+        return found;
+    }
+
+    /**
+     * Checks if string is in history.
+     *
+     * @param str       String to check
+     * @param modifiers Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean isInHistory(String str, Object... modifiers) {
+        int index = shardFor(KEYS.get().set(str).append(modifiers));
+        boolean found;
+        synchronized(locks[index]) {
+            found = shard(index).isInHistory(str, modifiers);
+        }
+        evictColdShards(index);
+        return found;
+    }
+
+    /**
+     * Removes oldest occurrence of specified string from history list
+     *
+     * @param str       String to check
+     * @param modifiers Extra value to add string
+     * @return True if string found in history and removed
+     */
+    public boolean remove(String str, Object... modifiers) {
+        int index = shardFor(KEYS.get().set(str).append(modifiers));
+        boolean removed;
+        synchronized(locks[index]) {
+            removed = shard(index).remove(str, modifiers);
+        }
+        evictColdShards(index);
+        return removed;
+    }
+
+    /**
+     * Save every loaded shard in parallel.
+     *
+     * @throws IOException First failure, after every shard was attempted
+     */
+    public void save() throws IOException {
+        forEachLoaded(false);
+    }
+
+    /**
+     * Rewrite every loaded shard in parallel, clearing their journals.
+     *
+     * @throws IOException First failure, after every shard was attempted
+     */
+    public void compact() throws IOException {
+        forEachLoaded(true);
+    }
+
+    /**
+     * Returns the file name of the log.
+     *
+     * @return
+     */
+    public String getName() {
+        return logName;
+    }
+
+    /**
+     * @return Number of shards
+     */
+    public int getShardCount() {
+        return shards.length();
+    }
+
+    /**
+     * @return Number of shards currently in memory
+     */
+    public int getLoadedShardCount() {
+        return loaded.get();
+    }
+
+    /**
+     * Returns a copy of values grouped by shard, oldest first within a shard. Loads every shard.
+     *
+     * @return
+     */
+    public List<String> getSavedList() {
+        List<String> list = new ArrayList<String>();
+        for(int i = 0; i < shards.length(); i++) {
+            synchronized(locks[i]) {
+                list.addAll(shard(i).getSavedList());
+            }
+            evictColdShards(i);
+        }
+        return list;
+    }
+
+    private int shardFor(CompositeKey key) {
+        int hash = key.stringHash();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length());
+    }
+
+    /**
+     * Returns shard, loading it if needed. Caller must hold the shard lock.
+     */
+    private HistoryLog shard(int index) {
+        lastAccess.set(index, accessClock.incrementAndGet());
+        HistoryLog log = shards.get(index);
+        if(log == null) {
+            try {
+                log = new HistoryLog(srcPath, logName + "." + index, shardSize, allowDups).setJournaled(journaled);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Unable to load shard " + index + " of " + logName, e);
+            }
+            if(format != null) {
+                log.setFormat(format);
+            }
+            if(policy != null) {
+                log.setEvictionPolicy(policy);
+            }
+            if(filterRate > 0) {
+                log.enableFilter(filterRate);
+            }
+            shards.set(index, log);
+            loaded.incrementAndGet();
+        }
+        return log;
+    }
+
+    /**
+     * Saves and unloads least recently used shards, never the one just used. Takes one shard lock
+     * at a time so it can not deadlock with callers holding another, and waits for a parallel save
+     * of the shard outside its lock since the save needs it.
+     */
+    private void evictColdShards(int current) {
+        boolean pressure = memoryThreshold < 1 && isMemoryLow();
+        while(loaded.get() > maxLoadedShards || pressure) {
+            pressure = false; // heap usage lags behind, unload one shard per check
+            int coldest = -1;
+            for(int i = 0; i < shards.length(); i++) {
+                if(i != current && shards.get(i) != null && (coldest < 0 || lastAccess.get(i) < lastAccess.get(coldest))) {
+                    coldest = i;
+                }
+            }
+            if(coldest < 0) {
+                return;
+            }
+            if(!awaitSave(coldest)) {
+                return;
+            }
+            synchronized(locks[coldest]) {
+                HistoryLog log = shards.get(coldest);
+                if(log == null) {
+                    continue; // unloaded by another thread
+                }
+                try {
+                    log.saveAndAwait(); // a reload must not race the shard's background compaction
+                }
+                catch (IOException e) {
+                    error("Unable to save shard " + coldest + " of " + logName + ", keeping it loaded: " + e);
+                    return;
+                }
+                shards.set(coldest, null);
+                loaded.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return False if interrupted while waiting, with the interrupt flag restored
+     */
+    private boolean awaitSave(int index) {
+        Future<?> save = saves.get(index);
+        if(save == null) {
+            return true;
+        }
+        try {
+            save.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException e) {
+            // reported by save(), unload saves the shard again
+        }
+        saves.compareAndSet(index, save, null);
+        return true;
+    }
+
+    /**
+     * @return True if heap in use after the last collection is above the threshold. Falls back to
+     *         current usage when the JVM does not report collection usage.
+     */
+    private boolean isMemoryLow() {
+        long used = 0;
+        long max = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if(usage != null && usage.getMax() > 0) {
+                used += usage.getUsed();
+                max += usage.getMax();
+            }
+        }
+        if(max == 0) {
+            Runtime runtime = Runtime.getRuntime();
+            used = runtime.totalMemory() - runtime.freeMemory();
+            max = runtime.maxMemory();
+        }
+        return used > max * memoryThreshold;
+    }
+
+    private void forEachLoaded(boolean compact) throws IOException {
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for(int i = 0; i < shards.length(); i++) {
+            int index = i;
+            Future<?> future = SAVER.submit(() -> {
+                synchronized(locks[index]) {
+                    HistoryLog log = shards.get(index);
+                    if(log != null) {
+                        if(compact) {
+                            log.compact();
+                        }
+                        else {
+                            log.save();
+                        }
+                    }
+                }
+                return null;
+            });
+            saves.set(index, future);
+            futures.add(future);
+        }
+        IOException failure = null;
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while saving " + logName, e);
+            }
+            catch (ExecutionException e) {
+                if(failure == null) {
+                    failure = e.getCause() instanceof IOException ? (IOException)e.getCause() : new IOException(e.getCause());
+                }
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package org.tonyhsu17.utilities;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+
+/**
+ * History shared by several processes through one append-only file.
+ * <p>
+ * The file holds journal records, "+entry" or "-entry" per line. Every process keeps its own
+ * index and tails records appended since the last offset it read, so a refresh costs only the new
+ * records. Changes take an exclusive {@link FileLock} on a ".lock" file, catch up with the tail
+ * and only then decide and append, so two processes never add the same entry twice and no update
+ * is lost. Eviction is applied while replaying, so every process must use the same logSize.
+ * <p>
+ * Once the file holds more than the compaction threshold of stale records it is rewritten with
+ * only the live entries and atomically replaced. Other processes notice the new file by its file
+ * key (or by the file shrinking where there is none) and reload it in full.
+ * <p>
+ * Instances in the same JVM coordinate through an in-process lock, since file locks are held per
+ * JVM.
+ *
+ * @author Tony Hsu
+ */
+public class SharedHistoryLog implements Logger, Closeable {
+    private static final ConcurrentHashMap<Path, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private String logName;
+    private Path logPath;
+    private Path tempPath;
+    private int logSize;
+    private boolean allowDups;
+    private HistoryIndex entries;
+    private final ReentrantLock processLock;
+    private FileChannel lockChannel;
+    private FileChannel readChannel;
+    private FileChannel writeChannel;
+    private Object fileKey; // identifies the file the channels are open on
+    private long offset; // end of last complete record read
+    private int records; // records in file
+    private int compactionThreshold;
+    private long refreshInterval; // millis between tails on lookups
+    private long lastRefresh;
+    private boolean sync;
+    private final ByteBuffer readBuffer;
+    private byte[] line; // record spanning reads
+    private int lineLength;
+
+    /**
+     * Initializes and reads in log file.
+     *
+     * @param srcPath   Directory to store/read log file
+     * @param logName   Name of log
+     * @param logSize   Max entry size to store, must be the same for every process
+     * @param allowDups allow same entries to be added
+     * @throws IOException
+     */
+    public SharedHistoryLog(String srcPath, String logName, int logSize, boolean allowDups) throws IOException {
+        this.logName = logName;
+        this.logSize = logSize;
+        this.allowDups = allowDups;
+        logPath = Paths.get(srcPath, logName).toAbsolutePath().normalize();
+        tempPath = Paths.get(logPath + ".tmp");
+        entries = new HistoryIndex(0);
+        compactionThreshold = logSize;
+        readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        line = new byte[256];
+        processLock = PROCESS_LOCKS.computeIfAbsent(logPath, k -> new ReentrantLock());
+        lockChannel = FileChannel.open(Paths.get(logPath + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = lock();
+        try {
+            if(!Files.exists(logPath)) {
+                Files.createFile(logPath);
+            }
+            reopen();
+            tail();
+        }
+        finally {
+            unlock(lock);
+        }
+    }
+
+    /**
+     * Override number of stale records that triggers a rewrite of the file. Default is the max entry size
+     *
+     * @param records Number of records
+     * @return
+     */
+    public synchronized SharedHistoryLog setCompactionThreshold(int records) {
+        compactionThreshold = records;
+        return this;
+    }
+
+    /**
+     * Override how often lookups read records from other processes. Changes always read first.
+     * Default is 0, every lookup
+     *
+     * @param millis Minimum time between reads
+     * @return
+     */
+    public synchronized SharedHistoryLog setRefreshInterval(long millis) {
+        refreshInterval = millis;
+        return this;
+    }
+
+    /**
+     * Fsync every append. Default is off, appends survive a process crash but not a power loss
+     *
+     * @param sync True to enable
+     * @return
+     */
+    public synchronized SharedHistoryLog setSync(boolean sync) {
+        this.sync = sync;
+        return this;
+    }
+
+    public void add(String str) {
+        add(str, "");
+    }
+
+    /**
+     * Write string to the shared file.
+     *
+     * @param str      String to write
+     * @param modifier Extra value to add to string
+     */
+    public synchronized void add(String str, String modifier) {
+        String entry = str + modifier;
+        try {
+            FileLock lock = lock();
+            try {
+                tail();
+                if(allowDups || !entries.contains(entry)) {
+                    append(HistoryJournal.ADD, entry);
+                    applyAdd(entry);
+                    compactIfNeeded();
+                }
+            }
+            finally {
+                unlock(lock);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Unable to add to " + logPath, e);
+        }
+    }
+
+    /**
+     * Checks if string is in history, including entries added by other processes.
+     *
+     * @param str String to check
+     * @return True if string found in history
+     */
+    public boolean contains(String str) {
+        return isInHistory(str);
+    }
+
+    /**
+     * Checks if string is in history, including entries added by other processes.
+     *
+     * @param str       String to check
+     * @param modifiers Extra value to add string
+     * @return True if string found in history
+     */
+    public boolean contains(String str, Object... modifiers) {
+        return isInHistory(str, modifiers);
+    }
+
+    /**
+     * Checks if string is in history, including entries added by other processes.
+     *
+     * @param str       String to check
+     * @param modifiers Extra value to add string
+     * @return True if string found in history
+     */
+    public synchronized boolean isInHistory(String str, Object... modifiers) {
+        refreshIfDue();
+        return entries.contains(HistoryLog.toKey(str, modifiers));
+    }
+
+    /**
+     * Removes oldest occurrence of specified string from history list
+     *
+     * @param str       String to check
+     * @param modifiers Extra value to add string
+     * @return True if string found in history and removed
+     */
+    public synchronized boolean remove(String str, Object... modifiers) {
+        String key = HistoryLog.toKey(str, modifiers);
+        try {
+            FileLock lock = lock();
+            try {
+                tail();
+                if(!entries.contains(key)) {
+                    return false;
+                }
+                append(HistoryJournal.REMOVE, key);
+                entries.remove(key);
+                compactIfNeeded();
+                return true;
+            }
+            finally {
+                unlock(lock);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Unable to remove from " + logPath, e);
+        }
+    }
+
+    /**
+     * Reads records appended by other processes.
+     *
+     * @throws IOException
+     */
+    public synchronized void refresh() throws IOException {
+        tail();
+    }
+
+    /**
+     * Rewrite the file with only live entries.
+     *
+     * @throws IOException
+     */
+    public synchronized void compact() throws IOException {
+        FileLock lock = lock();
+        try {
+            tail();
+            rewrite();
+        }
+        finally {
+            unlock(lock);
+        }
+    }
+
+    /**
+     * Returns the file name of the log.
+     *
+     * @return
+     */
+    public String getName() {
+        return logName;
+    }
+
+    /**
+     * Returns the file path of the log.
+     *
+     * @return
+     */
+    public String getPath() {
+        return logPath.toString();
+    }
+
+    /**
+     * Returns a copy of values, oldest first, after reading records from other processes.
+     *
+     * @return
+     */
+    public synchronized List<String> getSavedList() {
+        refreshIfDue();
+        return new ArrayList<String>(entries.asList());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            readChannel.close();
+            writeChannel.close();
+        }
+        finally {
+            lockChannel.close();
+        }
+    }
+
+    private void refreshIfDue() {
+        long now = System.currentTimeMillis();
+        if(refreshInterval > 0 && now - lastRefresh < refreshInterval) {
+            return;
+        }
+        try {
+            tail();
+        }
+        catch (IOException e) {
+            error("Unable to refresh " + logPath + ": " + e);
+        }
+        lastRefresh = now;
+    }
+
+    private FileLock lock() throws IOException {
+        processLock.lock();
+        try {
+            return lockChannel.lock();
+        }
+        catch (IOException | RuntimeException e) {
+            processLock.unlock();
+            throw e;
+        }
+    }
+
+    private void unlock(FileLock lock) throws IOException {
+        try {
+            lock.release();
+        }
+        finally {
+            processLock.unlock();
+        }
+    }
+
+    /**
+     * Opens channels on the current file and rereads it from the start.
+     */
+    private void reopen() throws IOException {
+        if(readChannel != null) {
+            readChannel.close();
+            writeChannel.close();
+        }
+        readChannel = FileChannel.open(logPath, StandardOpenOption.READ);
+        writeChannel = FileChannel.open(logPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileKey = fileKey();
+        entries.clear();
+        offset = 0;
+        records = 0;
+    }
+
+    private Object fileKey() throws IOException {
+        return Files.readAttributes(logPath, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Applies complete records appended since offset. A partial last record is read again next time.
+     */
+    private void tail() throws IOException {
+        Object key = fileKey();
+        if((key != null && !Objects.equals(key, fileKey)) || readChannel.size() < offset) {
+            reopen(); // replaced by compaction
+        }
+        long position = offset;
+        lineLength = 0;
+        while(true) {
+            readBuffer.clear();
+            int read = readChannel.read(readBuffer, position);
+            if(read <= 0) {
+                break;
+            }
+            byte[] bytes = readBuffer.array();
+            int start = 0;
+            for(int i = 0; i < read; i++) {
+                if(bytes[i] == '\n') {
+                    appendToLine(bytes, start, i - start);
+                    apply(new String(line, 0, lineLength, StandardCharsets.UTF_8));
+                    lineLength = 0;
+                    start = i + 1;
+                    offset = position + start;
+                }
+            }
+            appendToLine(bytes, start, read - start);
+            position += read;
+        }
+        lastRefresh = System.currentTimeMillis();
+    }
+
+    private void appendToLine(byte[] bytes, int start, int length) {
+        if(lineLength + length > line.length) {
+            byte[] grown = new byte[Math.max(line.length * 2, lineLength + length)];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        System.arraycopy(bytes, start, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private void apply(String record) {
+        if(record.isEmpty()) {
+            return;
+        }
+        records++;
+        if(record.charAt(0) == HistoryJournal.ADD) {
+            applyAdd(record.substring(1));
+        }
+        else if(record.charAt(0) == HistoryJournal.REMOVE) {
+            entries.remove(record.substring(1));
+        }
+    }
+
+    private void applyAdd(String entry) {
+        entries.add(entry);
+        while(entries.size() > logSize) {
+            entries.removeOldest();
+        }
+    }
+
+    /**
+     * Appends a record. Caller must hold the lock and have read the tail.
+     */
+    private void append(char op, String entry) throws IOException {
+        if(writeChannel.size() > offset) {
+            writeChannel.truncate(offset); // torn record from a writer that died holding the lock
+        }
+        ByteBuffer buffer = ByteBuffer.wrap((HistoryJournal.encode(op, entry) + '\n').getBytes(StandardCharsets.UTF_8));
+        while(buffer.hasRemaining()) {
+            writeChannel.write(buffer);
+        }
+        if(sync) {
+            writeChannel.force(false);
+        }
+        offset = writeChannel.size();
+        records++;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if(records - entries.size() > compactionThreshold) {
+            rewrite();
+        }
+    }
+
+    /**
+     * Replaces the file with one add record per live entry. Caller must hold the lock.
+     */
+    private void rewrite() throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(tempPath.toFile())) {
+            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8));
+            for(String entry : entries.asList()) {
+                bw.write(HistoryJournal.encode(HistoryJournal.ADD, entry));
+                bw.write('\n');
+            }
+            bw.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tempPath, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        reopen();
+        tail();
+    }
+}
@@ -0,0 +1,83 @@
+package org.tonyhsu17.utilities.checksum;
+
+/**
+ * Combines CRC32 values of consecutive blocks without re-reading the data.
+ * <p>
+ * Port of zlib's crc32_combine: appending len2 zero bits to crc1 is a linear operation over GF(2),
+ * so it can be applied as repeated squaring of the 32x32 "shift by one zero bit" matrix.
+ *
+ * @author Tony Hsu
+ */
+public class CRC32Combiner {
+    private static final int GF2_DIM = 32;
+    private static final long CRC32_POLY = 0xedb88320L; // reversed polynomial
+
+    private CRC32Combiner() {
+        // no need to initialize class.
+    }
+
+    /**
+     * Returns the CRC32 of two blocks concatenated.
+     *
+     * @param crc1 CRC32 of the first block
+     * @param crc2 CRC32 of the second block
+     * @param len2 Length of the second block in bytes
+     * @return CRC32 of first block followed by second block
+     */
+    public static long combine(long crc1, long crc2, long len2) {
+        if(len2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[GF2_DIM]; // even-power-of-two zeros operator
+        long[] odd = new long[GF2_DIM]; // odd-power-of-two zeros operator
+
+        // put operator for one zero bit in odd
+        odd[0] = CRC32_POLY;
+        long row = 1;
+        for(int n = 1; n < GF2_DIM; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd); // two zero bits
+        square(odd, even); // four zero bits
+
+        // apply len2 zeros to crc1 (first square puts the operator for one zero byte in even)
+        do {
+            square(even, odd);
+            if((len2 & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            len2 >>= 1;
+            if(len2 == 0) {
+                break;
+            }
+            square(odd, even);
+            if((len2 & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            len2 >>= 1;
+        }
+        while(len2 != 0);
+
+        return (crc1 ^ crc2) & 0xffffffffL;
+    }
+
+    private static long times(long[] mat, long vec) {
+        long sum = 0;
+        int i = 0;
+        while(vec != 0) {
+            if((vec & 1) != 0) {
+                sum ^= mat[i];
+            }
+            vec >>>= 1;
+            i++;
+        }
+        return sum;
+    }
+
+    private static void square(long[] square, long[] mat) {
+        for(int n = 0; n < GF2_DIM; n++) {
+            square[n] = times(mat, mat[n]);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.tonyhsu17.utilities.checksum;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+
+
+/**
+ * Per-thread scratch state reused across checksum calls: a {@link CRC32} instance and a direct
+ * read buffer. Checksumming many small files then allocates nothing per file beyond the
+ * channel itself.
+ * <p>
+ * Instances are confined to their thread, use {@link #current()} and never share the result.
+ *
+ * @author Tony Hsu
+ */
+public final class ChecksumContext {
+    private static final ThreadLocal<ChecksumContext> CONTEXTS = new ThreadLocal<ChecksumContext>() {
+        @Override
+        protected ChecksumContext initialValue() {
+            return new ChecksumContext();
+        }
+    };
+    private final CRC32 crc;
+    private ByteBuffer directBuffer;
+
+    private ChecksumContext() {
+        crc = new CRC32();
+    }
+
+    /**
+     * @return Context of the calling thread
+     */
+    public static ChecksumContext current() {
+        return CONTEXTS.get();
+    }
+
+    /**
+     * Returns this thread's {@link CRC32}, reset and ready for a new value.
+     * Not re-entrant, finish using the previous value before calling again.
+     *
+     * @return {@link CRC32}
+     */
+    public CRC32 getCRC32() {
+        crc.reset();
+        return crc;
+    }
+
+    /**
+     * Returns this thread's direct buffer, cleared. Reallocated only when size changes.
+     *
+     * @param size Capacity in bytes
+     * @return {@link ByteBuffer}
+     */
+    public ByteBuffer getDirectBuffer(int size) {
+        if(directBuffer == null || directBuffer.capacity() != size) {
+            directBuffer = ByteBuffer.allocateDirect(size);
+        }
+        directBuffer.clear();
+        return directBuffer;
+    }
+}
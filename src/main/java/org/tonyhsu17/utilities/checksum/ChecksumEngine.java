@@ -0,0 +1,203 @@
+package org.tonyhsu17.utilities.checksum;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+
+
+/**
+ * Computes CRC32 values of files using a selectable I/O strategy.
+ * <p>
+ * {@link Strategy#STREAM} is the classic {@link CheckedInputStream} approach and copies every byte
+ * through a heap array. {@link Strategy#DIRECT_BUFFER} reads the {@link FileChannel} into a large
+ * direct {@link ByteBuffer} that is handed straight to {@link CRC32#update(ByteBuffer)}.
+ * {@link Strategy#MEMORY_MAPPED} maps the file in windows and lets the CRC read the page cache
+ * directly.
+ * <p>
+ * Per-file scratch state comes from {@link ChecksumContext} so repeated calls on the same thread
+ * do not allocate new buffers.
+ *
+ * @author Tony Hsu
+ */
+public class ChecksumEngine {
+    /**
+     * How file contents are fed into the checksum.
+     */
+    public static enum Strategy {
+        STREAM, DIRECT_BUFFER, MEMORY_MAPPED
+    }
+
+    public static final Strategy DEFAULT_STRATEGY = Strategy.DIRECT_BUFFER;
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20; // 1mb
+    public static final long DEFAULT_MAP_SIZE = 64L << 20; // 64mb
+    private Strategy strategy;
+    private int bufferSize;
+    private long mapSize;
+
+    /**
+     * Initializes engine using {@link #DEFAULT_STRATEGY}.
+     */
+    public ChecksumEngine() {
+        this(DEFAULT_STRATEGY);
+    }
+
+    /**
+     * Initializes engine using the given strategy.
+     *
+     * @param strategy {@link Strategy} to read files with
+     */
+    public ChecksumEngine(Strategy strategy) {
+        this.strategy = strategy;
+        bufferSize = DEFAULT_BUFFER_SIZE;
+        mapSize = DEFAULT_MAP_SIZE;
+    }
+
+    /**
+     * Override size of read buffer used by {@link Strategy#STREAM} and {@link Strategy#DIRECT_BUFFER}.
+     * Default is 1mb
+     *
+     * @param bufferSize Size in bytes
+     * @return
+     */
+    public ChecksumEngine setBufferSize(int bufferSize) {
+        if(bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Override size of each mapped window used by {@link Strategy#MEMORY_MAPPED}. Default is 64mb
+     *
+     * @param mapSize Size in bytes, at most {@link Integer#MAX_VALUE}
+     * @return
+     */
+    public ChecksumEngine setMapSize(long mapSize) {
+        if(mapSize <= 0 || mapSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("mapSize must be between 1 and " + Integer.MAX_VALUE + ": " + mapSize);
+        }
+        this.mapSize = mapSize;
+        return this;
+    }
+
+    /**
+     * @return {@link Strategy} used by this engine
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Calculates the CRC32 value of a file.
+     *
+     * @param file File to compute the CRC value
+     * @return CRC value as unsigned 32 bit value
+     * @throws IOException
+     */
+    public long crc32(File file) throws IOException {
+        if(strategy == Strategy.STREAM) {
+            // keep the original stream path as-is for callers that rely on it
+            try (CheckedInputStream cis = new CheckedInputStream(new FileInputStream(file), new CRC32())) {
+                byte[] buf = new byte[bufferSize];
+                while(cis.read(buf) >= 0);
+                return cis.getChecksum().getValue();
+            }
+        }
+        return crc32(file.toPath());
+    }
+
+    /**
+     * Calculates the CRC32 value of a file.
+     *
+     * @param path File to compute the CRC value
+     * @return CRC value as unsigned 32 bit value
+     * @throws IOException
+     */
+    public long crc32(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            CRC32 crc = ChecksumContext.current().getCRC32();
+            update(crc, channel, 0, channel.size());
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * Calculates the CRC32 value of a range within a file.
+     *
+     * @param path     File to compute the CRC value
+     * @param position Offset of first byte
+     * @param length   Number of bytes to include
+     * @return CRC value as unsigned 32 bit value
+     * @throws IOException
+     */
+    public long crc32(Path path, long position, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            CRC32 crc = ChecksumContext.current().getCRC32();
+            update(crc, channel, position, length);
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * Feeds a range of the channel into the checksum using this engine's strategy.
+     * The channel's own position is not modified.
+     *
+     * @param crc      Checksum to update
+     * @param channel  Open channel to read from
+     * @param position Offset of first byte
+     * @param length   Number of bytes to read, stops early at end of file
+     * @throws IOException
+     */
+    public void update(CRC32 crc, FileChannel channel, long position, long length) throws IOException {
+        switch(strategy) {
+            case MEMORY_MAPPED:
+                updateMapped(crc, channel, position, length);
+                break;
+            case DIRECT_BUFFER:
+                updateBuffered(crc, channel, position, length, ChecksumContext.current().getDirectBuffer(bufferSize));
+                break;
+            case STREAM:
+            default:
+                updateBuffered(crc, channel, position, length, ByteBuffer.allocate(bufferSize));
+                break;
+        }
+    }
+
+    private void updateBuffered(CRC32 crc, FileChannel channel, long position, long length, ByteBuffer buf) throws IOException {
+        long end = position + length;
+        long pos = position;
+        while(pos < end) {
+            buf.clear();
+            if(end - pos < buf.capacity()) {
+                buf.limit((int)(end - pos));
+            }
+            int read = channel.read(buf, pos);
+            if(read < 0) {
+                break;
+            }
+            pos += read;
+            buf.flip();
+            crc.update(buf);
+        }
+    }
+
+    private void updateMapped(CRC32 crc, FileChannel channel, long position, long length) throws IOException {
+        long end = Math.min(position + length, channel.size());
+        long pos = position;
+        while(pos < end) {
+            long window = Math.min(mapSize, end - pos);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, pos, window);
+            crc.update(mapped);
+            pos += window;
+        }
+    }
+}
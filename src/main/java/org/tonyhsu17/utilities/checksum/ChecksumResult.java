@@ -0,0 +1,90 @@
+package org.tonyhsu17.utilities.checksum;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+
+
+/**
+ * Struct holding the CRC32 value of a single file.
+ *
+ * @author Tony Hsu
+ */
+public class ChecksumResult {
+    private final Path path;
+    private final long size;
+    private final long crc;
+    private final IOException error;
+
+    /**
+     * Create a successful result.
+     *
+     * @param path File checksummed
+     * @param size Size of file in bytes
+     * @param crc  CRC32 value
+     */
+    public ChecksumResult(Path path, long size, long crc) {
+        this(path, size, crc, null);
+    }
+
+    /**
+     * Create a failed result.
+     *
+     * @param path  File checksummed
+     * @param error Reason the file could not be read
+     */
+    public ChecksumResult(Path path, IOException error) {
+        this(path, -1, -1, error);
+    }
+
+    private ChecksumResult(Path path, long size, long crc, IOException error) {
+        this.path = path;
+        this.size = size;
+        this.crc = crc;
+        this.error = error;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return Size of file in bytes, -1 if unreadable
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return CRC32 value, -1 if unreadable
+     */
+    public long getCRC32() {
+        return crc;
+    }
+
+    /**
+     * @return Formatted CRC32 value, 8 length hexadecimal in uppercase
+     */
+    public String getCRC32Hex() {
+        return String.format("%08X", crc);
+    }
+
+    /**
+     * @return True if file was read successfully
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return Reason the file could not be read, null if successful
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return path + (isSuccess() ? " " + getCRC32Hex() : " error: " + error.getMessage());
+    }
+}
@@ -0,0 +1,282 @@
+package org.tonyhsu17.utilities.checksum;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+
+/**
+ * Walks a directory tree and checksums every regular file concurrently.
+ * <p>
+ * The walk runs on the caller's thread and hands files to a {@link ForkJoinPool}. At most
+ * parallelism files are read at once and only a small window of pending files is queued, so
+ * memory use does not grow with the size of the tree. Results are pushed to a
+ * {@link ResultListener}, a {@link Stream} or a manifest file as soon as they complete.
+ *
+ * @author Tony Hsu
+ */
+public class ChecksumScanner {
+    /**
+     * Delegate method for each completed file. Called from worker threads.
+     */
+    public interface ResultListener {
+        /**
+         * @param result {@link ChecksumResult} of a single file
+         */
+        public void onResult(ChecksumResult result);
+    }
+
+    /**
+     * Supported manifest layouts.
+     * SFV: "relative/path CRC32", CSV: "path,size,crc32"
+     */
+    public static enum ManifestFormat {
+        SFV, CSV
+    }
+
+    private static final int QUEUE_FACTOR = 4; // pending files per worker
+    private int parallelism;
+    private ChecksumEngine engine;
+
+    /**
+     * Initializes scanner with one worker per processor.
+     */
+    public ChecksumScanner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes scanner.
+     *
+     * @param parallelism Max number of files read concurrently
+     */
+    public ChecksumScanner(int parallelism) {
+        if(parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        engine = new ChecksumEngine();
+    }
+
+    /**
+     * Override engine used to read each file. Default is {@link ChecksumEngine#DEFAULT_STRATEGY}
+     *
+     * @param engine {@link ChecksumEngine}
+     * @return
+     */
+    public ChecksumScanner setEngine(ChecksumEngine engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    /**
+     * Checksums every regular file under root.
+     *
+     * @param root     Directory to walk
+     * @param listener Receives each result as it completes, must be thread-safe
+     * @return {@link ScanStatistics} of the run
+     * @throws IOException If the tree could not be walked
+     */
+    public ScanStatistics scan(Path root, ResultListener listener) throws IOException {
+        return scan(root, listener, new AtomicBoolean());
+    }
+
+    /**
+     * Checksums every regular file under root and writes a manifest.
+     * Entries are written in completion order with paths relative to root.
+     *
+     * @param root     Directory to walk
+     * @param manifest File to write
+     * @param format   {@link ManifestFormat}
+     * @return {@link ScanStatistics} of the run
+     * @throws IOException If the tree could not be walked or the manifest written
+     */
+    public ScanStatistics writeManifest(Path root, Path manifest, ManifestFormat format) throws IOException {
+        Path manifestPath = manifest.toAbsolutePath();
+        try (BufferedWriter bw = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+            if(format == ManifestFormat.CSV) {
+                bw.write("path,size,crc32");
+                bw.newLine();
+            }
+            IOException[] writeError = new IOException[1];
+            ScanStatistics stats = scan(root, result -> {
+                if(!result.isSuccess() || result.getPath().toAbsolutePath().equals(manifestPath)) {
+                    return;
+                }
+                String relative = root.relativize(result.getPath()).toString().replace('\\', '/');
+                synchronized(bw) {
+                    try {
+                        if(format == ManifestFormat.CSV) {
+                            bw.write(csvEscape(relative) + "," + result.getSize() + "," + result.getCRC32Hex());
+                        }
+                        else {
+                            bw.write(relative + " " + result.getCRC32Hex());
+                        }
+                        bw.newLine();
+                    }
+                    catch (IOException e) {
+                        writeError[0] = e;
+                    }
+                }
+            });
+            if(writeError[0] != null) {
+                throw writeError[0];
+            }
+            if(format == ManifestFormat.SFV) {
+                bw.write("; " + stats);
+                bw.newLine();
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Returns results lazily as a {@link Stream}. Files are walked on a background thread and only a
+     * bounded number of results are buffered ahead of the consumer. Close the stream to stop early.
+     *
+     * @param root Directory to walk
+     * @return {@link Stream} of {@link ChecksumResult} in completion order
+     */
+    public Stream<ChecksumResult> stream(Path root) {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(parallelism * QUEUE_FACTOR);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Object done = new Object();
+        Thread producer = new Thread(() -> {
+            try {
+                scan(root, result -> offer(queue, result, cancelled), cancelled);
+            }
+            catch (IOException e) {
+                offer(queue, new ChecksumResult(root, e), cancelled);
+            }
+            finally {
+                offer(queue, done, cancelled);
+            }
+        }, "ChecksumScanner-walk");
+        producer.setDaemon(true);
+        producer.start();
+
+        Iterator<ChecksumResult> it = new Iterator<ChecksumResult>() {
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                if(next == null) {
+                    try {
+                        next = queue.take();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        next = done;
+                    }
+                }
+                return next != done;
+            }
+
+            @Override
+            public ChecksumResult next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ChecksumResult result = (ChecksumResult)next;
+                next = null;
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.NONNULL), false)
+                            .onClose(() -> cancelled.set(true));
+    }
+
+    private ScanStatistics scan(Path root, ResultListener listener, AtomicBoolean cancelled) throws IOException {
+        AtomicLong files = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        int maxPending = parallelism * QUEUE_FACTOR;
+        Semaphore pending = new Semaphore(maxPending);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long start = System.nanoTime();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if(cancelled.get()) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if(!attrs.isRegularFile()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    pending.acquireUninterruptibly();
+                    pool.execute(() -> {
+                        try {
+                            ChecksumResult result;
+                            try {
+                                result = new ChecksumResult(file, attrs.size(), engine.crc32(file));
+                                files.incrementAndGet();
+                                bytes.addAndGet(attrs.size());
+                            }
+                            catch (IOException e) {
+                                result = new ChecksumResult(file, e);
+                                failed.incrementAndGet();
+                            }
+                            listener.onResult(result);
+                        }
+                        finally {
+                            pending.release();
+                        }
+                    });
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                    failed.incrementAndGet();
+                    listener.onResult(new ChecksumResult(file, e));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        finally {
+            // wait for in-flight files, also when the walk failed so no result arrives after return
+            pending.acquireUninterruptibly(maxPending);
+            pool.shutdown();
+        }
+        return new ScanStatistics(files.get(), failed.get(), bytes.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Blocks until queue has room, giving up once the consumer has closed the stream.
+     */
+    private static void offer(BlockingQueue<Object> queue, Object item, AtomicBoolean cancelled) {
+        try {
+            while(!cancelled.get() && !queue.offer(item, 100, TimeUnit.MILLISECONDS));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String csvEscape(String value) {
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,314 @@
+package org.tonyhsu17.utilities.checksum;
+
+import org.tonyhsu17.utilities.checksum.VerifyResult.Status;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+
+/**
+ * Verifies files against CRC32 values embedded in their names, e.g. "Show - 01 [1A2B3C4D].mkv",
+ * and against .sfv files found in the same walk.
+ * <p>
+ * Names are matched on the walking thread with a single reused {@link Matcher}. Files are read on
+ * a bounded worker pool and results are emitted as each file completes. A run can be cancelled
+ * from any thread with {@link #cancel()}.
+ *
+ * @author Tony Hsu
+ */
+public class CrcVerifier {
+    /**
+     * Delegate method for each verified file. Called from worker threads.
+     */
+    public interface VerifyListener {
+        /**
+         * @param result {@link VerifyResult} of a single file
+         */
+        public void onResult(VerifyResult result);
+    }
+
+    /**
+     * Delegate method for progress updates. Called from worker threads.
+     */
+    public interface ProgressListener {
+        /**
+         * @param completed Files verified so far
+         * @param submitted Files found so far, grows while the walk is running
+         */
+        public void onProgress(long completed, long submitted);
+    }
+
+    /**
+     * Matches an 8 digit hexadecimal value in square brackets or parentheses.
+     * The last match in the name is used.
+     */
+    public static final Pattern DEFAULT_CRC_PATTERN = Pattern.compile("[\\[(]([0-9A-Fa-f]{8})[\\])]");
+    public static final int DEFAULT_PROGRESS_INTERVAL = 1000;
+    private static final int QUEUE_FACTOR = 4; // pending files per worker
+    private int parallelism;
+    private Pattern pattern;
+    private ChecksumEngine engine;
+    private ProgressListener progressListener;
+    private int progressInterval;
+    private volatile boolean cancelled;
+
+    /**
+     * Initializes verifier with one worker per processor.
+     */
+    public CrcVerifier() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes verifier.
+     *
+     * @param parallelism Max number of files read concurrently
+     */
+    public CrcVerifier(int parallelism) {
+        if(parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        pattern = DEFAULT_CRC_PATTERN;
+        engine = new ChecksumEngine();
+        progressInterval = DEFAULT_PROGRESS_INTERVAL;
+    }
+
+    /**
+     * Override pattern used to find the CRC in a file name. Group 1 must capture 8 hex digits.
+     *
+     * @param pattern Precompiled {@link Pattern}
+     * @return
+     */
+    public CrcVerifier setPattern(Pattern pattern) {
+        this.pattern = pattern;
+        return this;
+    }
+
+    /**
+     * Override engine used to read each file.
+     *
+     * @param engine {@link ChecksumEngine}
+     * @return
+     */
+    public CrcVerifier setEngine(ChecksumEngine engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    /**
+     * Receive progress every interval completed files and once at the end.
+     *
+     * @param listener {@link ProgressListener}
+     * @param interval Number of files between updates
+     * @return
+     */
+    public CrcVerifier setProgressListener(ProgressListener listener, int interval) {
+        progressListener = listener;
+        progressInterval = Math.max(1, interval);
+        return this;
+    }
+
+    /**
+     * Stops the current run. Files already being read finish, queued files are skipped.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return True if the last run was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Verifies every tagged file and every .sfv entry under root.
+     * A file that is both tagged and listed in an .sfv is verified for each source. An .sfv that
+     * cannot be read is reported as an {@link Status#ERROR} result whose path is the .sfv itself.
+     *
+     * @param root     Directory to walk
+     * @param listener Receives each result as it completes, must be thread-safe
+     * @return {@link ScanStatistics} where files are files read and failed are non-passing results
+     * @throws IOException If the tree could not be walked
+     */
+    public ScanStatistics verify(Path root, VerifyListener listener) throws IOException {
+        cancelled = false;
+        AtomicLong submitted = new AtomicLong();
+        AtomicLong completed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        int maxPending = parallelism * QUEUE_FACTOR;
+        Semaphore pending = new Semaphore(maxPending);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Matcher matcher = pattern.matcher("");
+        long start = System.nanoTime();
+
+        VerifyListener counting = result -> {
+            if(result.getStatus() != Status.PASS) {
+                failed.incrementAndGet();
+            }
+            listener.onResult(result);
+            long done = completed.incrementAndGet();
+            if(progressListener != null && done % progressInterval == 0) {
+                progressListener.onProgress(done, submitted.get());
+            }
+        };
+
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if(cancelled) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if(!attrs.isRegularFile()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String name = file.getFileName().toString();
+                    if(name.regionMatches(true, name.length() - 4, ".sfv", 0, 4)) {
+                        try {
+                            readSfv(file, (path, expected) -> submit(path, file, expected));
+                        }
+                        catch (IOException e) {
+                            // unreadable or not UTF-8, entries already submitted are still verified
+                            submitted.incrementAndGet();
+                            counting.onResult(new VerifyResult(file, file, -1, -1, Status.ERROR));
+                        }
+                    }
+                    else {
+                        long expected = findTag(matcher, name);
+                        if(expected >= 0) {
+                            submit(file, file, expected);
+                        }
+                    }
+                    return cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private void submit(Path path, Path source, long expected) {
+                    if(cancelled) {
+                        return;
+                    }
+                    submitted.incrementAndGet();
+                    pending.acquireUninterruptibly();
+                    pool.execute(() -> {
+                        try {
+                            if(!cancelled) {
+                                VerifyResult result = check(path, source, expected);
+                                if(result.getActual() >= 0) {
+                                    bytes.addAndGet(path.toFile().length());
+                                }
+                                counting.onResult(result);
+                            }
+                        }
+                        finally {
+                            pending.release();
+                        }
+                    });
+                }
+            });
+        }
+        finally {
+            // wait for in-flight files, also when the walk failed so no result arrives after return
+            pending.acquireUninterruptibly(maxPending);
+            pool.shutdown();
+        }
+        if(progressListener != null) {
+            progressListener.onProgress(completed.get(), submitted.get());
+        }
+        return new ScanStatistics(completed.get() - failed.get(), failed.get(), bytes.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Extracts the CRC embedded in a file name.
+     *
+     * @param name File name
+     * @return CRC value, -1 if name has no tag
+     */
+    public long findTag(String name) {
+        return findTag(pattern.matcher(""), name);
+    }
+
+    private static long findTag(Matcher matcher, String name) {
+        matcher.reset(name);
+        long value = -1;
+        while(matcher.find()) {
+            value = parseHex(name, matcher.start(1), matcher.end(1));
+        }
+        return value;
+    }
+
+    private VerifyResult check(Path path, Path source, long expected) {
+        if(!Files.exists(path)) {
+            return new VerifyResult(path, source, expected, -1, Status.MISSING);
+        }
+        try {
+            long actual = engine.crc32(path);
+            return new VerifyResult(path, source, expected, actual, actual == expected ? Status.PASS : Status.FAIL);
+        }
+        catch (IOException e) {
+            return new VerifyResult(path, source, expected, -1, Status.ERROR);
+        }
+    }
+
+    /**
+     * Delegate for each entry of an .sfv file.
+     */
+    private interface SfvEntryHandler {
+        void onEntry(Path path, long expected);
+    }
+
+    /**
+     * Parses "file name CRC32" lines, skipping ';' comments. Names are relative to the .sfv file.
+     */
+    private static void readSfv(Path sfv, SfvEntryHandler handler) throws IOException {
+        Path dir = sfv.getParent();
+        try (BufferedReader br = Files.newBufferedReader(sfv, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = br.readLine()) != null) {
+                line = line.trim();
+                int split = line.lastIndexOf(' ');
+                if(line.isEmpty() || line.charAt(0) == ';' || split < 0 || line.length() - split - 1 != 8) {
+                    continue;
+                }
+                long expected = parseHex(line, split + 1, line.length());
+                if(expected >= 0) {
+                    handler.onEntry(dir.resolve(line.substring(0, split).trim()), expected);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Value of hexadecimal digits in [start, end), -1 if any char is not a hex digit
+     */
+    private static long parseHex(CharSequence s, int start, int end) {
+        long value = 0;
+        for(int i = start; i < end; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if(digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,126 @@
+package org.tonyhsu17.utilities.checksum;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+
+/**
+ * Immutable holder of every value computed by a {@link MultiDigest} run, keyed by digest name.
+ * Checksums (CRC32, Adler32, ...) are stored as 4 big-endian bytes so they print the same as
+ * their usual hexadecimal form.
+ *
+ * @author Tony Hsu
+ */
+public final class DigestResult {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private final Map<String, byte[]> values;
+    private final long size;
+
+    DigestResult(Map<String, byte[]> values, long size) {
+        this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+        this.size = size;
+    }
+
+    /**
+     * @return Number of bytes digested
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Names of every digest in the result, in the order they were added
+     */
+    public Set<String> getNames() {
+        return values.keySet();
+    }
+
+    /**
+     * @param name Name of digest
+     * @return True if result contains the digest
+     */
+    public boolean contains(String name) {
+        return values.containsKey(name);
+    }
+
+    /**
+     * @param name Name of digest
+     * @return Copy of the raw digest bytes, null if not computed
+     */
+    public byte[] getBytes(String name) {
+        byte[] value = values.get(name);
+        return value == null ? null : value.clone();
+    }
+
+    /**
+     * @param algorithm {@link MultiDigest.Algorithm}
+     * @return Copy of the raw digest bytes, null if not computed
+     */
+    public byte[] getBytes(MultiDigest.Algorithm algorithm) {
+        return getBytes(algorithm.getName());
+    }
+
+    /**
+     * @param name Name of digest
+     * @return Digest formatted as hexadecimal in lowercase, null if not computed
+     */
+    public String getHex(String name) {
+        byte[] value = values.get(name);
+        if(value == null) {
+            return null;
+        }
+        char[] out = new char[value.length * 2];
+        for(int i = 0; i < value.length; i++) {
+            out[i * 2] = HEX[(value[i] >> 4) & 0xf];
+            out[i * 2 + 1] = HEX[value[i] & 0xf];
+        }
+        return new String(out);
+    }
+
+    /**
+     * @param algorithm {@link MultiDigest.Algorithm}
+     * @return Digest formatted as hexadecimal in lowercase, null if not computed
+     */
+    public String getHex(MultiDigest.Algorithm algorithm) {
+        return getHex(algorithm.getName());
+    }
+
+    /**
+     * Returns a checksum value as a number. Only meaningful for digests of at most 8 bytes.
+     *
+     * @param name Name of digest
+     * @return Unsigned value of the digest bytes
+     * @throws IllegalArgumentException if digest was not computed or is longer than 8 bytes
+     */
+    public long getValue(String name) {
+        byte[] value = values.get(name);
+        if(value == null || value.length > 8) {
+            throw new IllegalArgumentException("No numeric value for digest: " + name);
+        }
+        long result = 0;
+        for(byte b : value) {
+            result = (result << 8) | (b & 0xff);
+        }
+        return result;
+    }
+
+    /**
+     * @param algorithm {@link MultiDigest.Algorithm}
+     * @return Unsigned value of the digest bytes
+     */
+    public long getValue(MultiDigest.Algorithm algorithm) {
+        return getValue(algorithm.getName());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for(String name : values.keySet()) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(name).append('=').append(getHex(name));
+        }
+        return sb.toString();
+    }
+}
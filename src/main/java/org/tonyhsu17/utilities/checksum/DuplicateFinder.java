@@ -0,0 +1,228 @@
+package org.tonyhsu17.utilities.checksum;
+
+import org.tonyhsu17.utilities.FileUtils;
+import org.tonyhsu17.utilities.checksum.MultiDigest.Algorithm;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+
+
+/**
+ * Finds files with identical contents while reading as little as possible.
+ * <ol>
+ * <li>Files are bucketed by size, unique sizes are never read.</li>
+ * <li>Candidates are grouped by a CRC32 of their first and last few KB.</li>
+ * <li>Only groups that still collide are read in full and compared by digest.</li>
+ * </ol>
+ * Size buckets are processed in parallel and each group is reported as soon as it is confirmed.
+ *
+ * @author Tony Hsu
+ */
+public class DuplicateFinder {
+    /**
+     * Delegate method for each confirmed group. Called from worker threads.
+     */
+    public interface DuplicateListener {
+        /**
+         * @param group {@link DuplicateGroup} of identical files
+         */
+        public void onDuplicates(DuplicateGroup group);
+    }
+
+    public static final int DEFAULT_SAMPLE_SIZE = 4096; // 4kb
+    private int parallelism;
+    private int sampleSize;
+    private long minSize;
+    private Algorithm algorithm;
+    private ChecksumEngine engine;
+
+    /**
+     * Initializes finder with one worker per processor.
+     */
+    public DuplicateFinder() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes finder.
+     *
+     * @param parallelism Max number of files read concurrently
+     */
+    public DuplicateFinder(int parallelism) {
+        if(parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        sampleSize = DEFAULT_SAMPLE_SIZE;
+        minSize = 1;
+        algorithm = Algorithm.CRC32;
+        engine = new ChecksumEngine();
+    }
+
+    /**
+     * Override number of bytes sampled from each end of a candidate. Default is 4kb
+     *
+     * @param sampleSize Size in bytes
+     * @return
+     */
+    public DuplicateFinder setSampleSize(int sampleSize) {
+        if(sampleSize <= 0) {
+            throw new IllegalArgumentException("sampleSize must be positive: " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+        return this;
+    }
+
+    /**
+     * Override smallest file size considered. Default is 1, ignoring empty files
+     *
+     * @param minSize Size in bytes
+     * @return
+     */
+    public DuplicateFinder setMinSize(long minSize) {
+        this.minSize = minSize;
+        return this;
+    }
+
+    /**
+     * Override digest used to confirm duplicates. Default is {@link Algorithm#CRC32}, use a
+     * cryptographic digest when a CRC collision would be costly.
+     *
+     * @param algorithm {@link Algorithm}
+     * @return
+     */
+    public DuplicateFinder setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+        return this;
+    }
+
+    /**
+     * Finds duplicate files under root.
+     *
+     * @param root     Directory to walk
+     * @param listener Receives each group as it is confirmed, must be thread-safe
+     * @return {@link ScanStatistics} where files are candidates read and bytes are bytes read
+     * @throws IOException If the tree could not be walked
+     */
+    public ScanStatistics find(Path root, DuplicateListener listener) throws IOException {
+        long start = System.nanoTime();
+        Map<Long, List<Path>> bySize = new HashMap<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if(attrs.isRegularFile() && attrs.size() >= minSize) {
+                    bySize.computeIfAbsent(attrs.size(), k -> new ArrayList<>(2)).add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        AtomicLong files = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        MultiDigest digest = algorithm == Algorithm.CRC32 ? null : new MultiDigest(algorithm);
+        try {
+            for(Map.Entry<Long, List<Path>> bucket : bySize.entrySet()) {
+                if(bucket.getValue().size() > 1) {
+                    long size = bucket.getKey();
+                    List<Path> candidates = bucket.getValue();
+                    pool.execute(() -> processBucket(size, candidates, digest, listener, files, failed, bytes));
+                }
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        }
+        finally {
+            if(digest != null) {
+                digest.close();
+            }
+        }
+        return new ScanStatistics(files.get(), failed.get(), bytes.get(), System.nanoTime() - start);
+    }
+
+    private void processBucket(long size, List<Path> candidates, MultiDigest digest, DuplicateListener listener,
+                               AtomicLong files, AtomicLong failed, AtomicLong bytes) {
+        boolean sampleIsFull = size <= 2L * sampleSize;
+        Map<Long, List<Path>> bySample = new HashMap<>();
+        for(Path path : candidates) {
+            try {
+                bySample.computeIfAbsent(sampleCRC32(path, size), k -> new ArrayList<>(2)).add(path);
+                files.incrementAndGet();
+                bytes.addAndGet(Math.min(size, 2L * sampleSize));
+            }
+            catch (IOException e) {
+                failed.incrementAndGet();
+            }
+        }
+
+        for(Map.Entry<Long, List<Path>> sample : bySample.entrySet()) {
+            List<Path> group = sample.getValue();
+            if(group.size() < 2) {
+                continue;
+            }
+            if(sampleIsFull && digest == null) {
+                // sample already covered the whole file
+                listener.onDuplicates(new DuplicateGroup(size, FileUtils.toHex(sample.getKey(), 8), group));
+                continue;
+            }
+            Map<String, List<Path>> byDigest = new HashMap<>();
+            for(Path path : group) {
+                try {
+                    String hex = digest == null ? FileUtils.toHex(engine.crc32(path), 8) : digest.digest(path).getHex(algorithm);
+                    byDigest.computeIfAbsent(hex, k -> new ArrayList<>(2)).add(path);
+                    bytes.addAndGet(size);
+                }
+                catch (IOException e) {
+                    failed.incrementAndGet();
+                }
+            }
+            for(Map.Entry<String, List<Path>> confirmed : byDigest.entrySet()) {
+                if(confirmed.getValue().size() > 1) {
+                    listener.onDuplicates(new DuplicateGroup(size, confirmed.getKey(), confirmed.getValue()));
+                }
+            }
+        }
+    }
+
+    /**
+     * CRC32 of the first and last sampleSize bytes, or of the whole file if it is small.
+     */
+    private long sampleCRC32(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            CRC32 crc = ChecksumContext.current().getCRC32();
+            if(size <= 2L * sampleSize) {
+                engine.update(crc, channel, 0, size);
+            }
+            else {
+                engine.update(crc, channel, 0, sampleSize);
+                engine.update(crc, channel, size - sampleSize, sampleSize);
+            }
+            return crc.getValue();
+        }
+    }
+}
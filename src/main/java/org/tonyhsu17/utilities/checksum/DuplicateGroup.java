@@ -0,0 +1,58 @@
+package org.tonyhsu17.utilities.checksum;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+
+/**
+ * Struct holding a set of files confirmed to have identical contents.
+ *
+ * @author Tony Hsu
+ */
+public class DuplicateGroup {
+    private final long size;
+    private final String digest;
+    private final List<Path> paths;
+
+    public DuplicateGroup(long size, String digest, List<Path> paths) {
+        this.size = size;
+        this.digest = digest;
+        this.paths = Collections.unmodifiableList(new ArrayList<>(paths));
+    }
+
+    /**
+     * @return Size of each file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Full-content digest shared by every file, hexadecimal in lowercase
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * @return Files with identical contents, at least 2
+     */
+    public List<Path> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return Bytes that could be reclaimed by keeping a single copy
+     */
+    public long getWastedBytes() {
+        return size * (paths.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return digest + " (" + size + " bytes): " + paths;
+    }
+}
@@ -0,0 +1,366 @@
+package org.tonyhsu17.utilities.checksum;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+
+
+/**
+ * Computes any number of checksums and message digests of a file in a single read.
+ * <p>
+ * The caller's thread only reads. Each digest runs on its own thread and consumes the same
+ * buffers, and a small ring of buffers lets the next read proceed while the previous buffer
+ * is still being hashed. Total time is roughly max(read time, slowest digest) instead of
+ * reading the file once per digest.
+ *
+ * @author Tony Hsu
+ */
+public class MultiDigest implements Closeable {
+    /**
+     * Built-in digests.
+     */
+    public static enum Algorithm {
+        CRC32("CRC32"), CRC32C("CRC32C"), ADLER32("Adler32"), MD5("MD5"), SHA_256("SHA-256");
+
+        private final String name;
+
+        private Algorithm(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return Name used as key in {@link DigestResult}
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20; // 1mb
+    private static final int BUFFER_COUNT = 3; // one being read, others being hashed
+    private Map<String, Supplier<Lane>> lanes;
+    private int bufferSize;
+    private ExecutorService executor;
+
+    /**
+     * A single digest and the buffers waiting for it.
+     */
+    private static abstract class Lane {
+        final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+
+        abstract void update(byte[] data, int length);
+
+        abstract byte[] finish();
+    }
+
+    /**
+     * Buffer shared by every lane, handed back to the reader once all lanes are done with it.
+     */
+    private static class Chunk {
+        final byte[] data;
+        int length; // -1 marks end of file
+        final AtomicInteger pending = new AtomicInteger();
+
+        Chunk(int size) {
+            data = new byte[size];
+        }
+    }
+
+    /**
+     * Initializes with the given built-in digests.
+     *
+     * @param algorithms {@link Algorithm} to compute
+     */
+    public MultiDigest(Algorithm... algorithms) {
+        lanes = new LinkedHashMap<>();
+        bufferSize = DEFAULT_BUFFER_SIZE;
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "MultiDigest");
+            t.setDaemon(true);
+            return t;
+        });
+        for(Algorithm algorithm : algorithms) {
+            add(algorithm);
+        }
+    }
+
+    /**
+     * Adds a built-in digest.
+     *
+     * @param algorithm {@link Algorithm}
+     * @return
+     * @throws UnsupportedOperationException if the runtime does not provide the algorithm
+     */
+    public MultiDigest add(Algorithm algorithm) {
+        switch(algorithm) {
+            case CRC32:
+                return addChecksum(algorithm.getName(), CRC32::new);
+            case ADLER32:
+                return addChecksum(algorithm.getName(), Adler32::new);
+            case CRC32C:
+                // only available on Java 9+, look up at runtime to keep Java 8 support
+                Constructor<? extends Checksum> crc32c;
+                try {
+                    crc32c = Class.forName("java.util.zip.CRC32C").asSubclass(Checksum.class).getDeclaredConstructor();
+                }
+                catch (ReflectiveOperationException e) {
+                    throw new UnsupportedOperationException("CRC32C requires Java 9 or later");
+                }
+                return addChecksum(algorithm.getName(), () -> {
+                    try {
+                        return crc32c.newInstance();
+                    }
+                    catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            case MD5:
+            case SHA_256:
+            default:
+                try {
+                    MessageDigest.getInstance(algorithm.getName());
+                }
+                catch (NoSuchAlgorithmException e) {
+                    throw new UnsupportedOperationException(algorithm.getName() + " is not available", e);
+                }
+                return addDigest(algorithm.getName(), () -> {
+                    try {
+                        return MessageDigest.getInstance(algorithm.getName());
+                    }
+                    catch (NoSuchAlgorithmException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+        }
+    }
+
+    /**
+     * Adds a custom {@link Checksum}. Result is stored as 4 big-endian bytes.
+     *
+     * @param name    Key in {@link DigestResult}
+     * @param factory Creates a fresh instance for every file
+     * @return
+     */
+    public MultiDigest addChecksum(String name, Supplier<? extends Checksum> factory) {
+        lanes.put(name, () -> {
+            Checksum checksum = factory.get();
+            return new Lane() {
+                @Override
+                void update(byte[] data, int length) {
+                    checksum.update(data, 0, length);
+                }
+
+                @Override
+                byte[] finish() {
+                    long value = checksum.getValue();
+                    return new byte[] {(byte)(value >>> 24), (byte)(value >>> 16), (byte)(value >>> 8), (byte)value};
+                }
+            };
+        });
+        return this;
+    }
+
+    /**
+     * Adds a custom {@link MessageDigest}.
+     *
+     * @param name    Key in {@link DigestResult}
+     * @param factory Creates a fresh instance for every file
+     * @return
+     */
+    public MultiDigest addDigest(String name, Supplier<? extends MessageDigest> factory) {
+        lanes.put(name, () -> {
+            MessageDigest digest = factory.get();
+            return new Lane() {
+                @Override
+                void update(byte[] data, int length) {
+                    digest.update(data, 0, length);
+                }
+
+                @Override
+                byte[] finish() {
+                    return digest.digest();
+                }
+            };
+        });
+        return this;
+    }
+
+    /**
+     * Override size of each read buffer. Default is 1mb
+     *
+     * @param bufferSize Size in bytes
+     * @return
+     */
+    public MultiDigest setBufferSize(int bufferSize) {
+        if(bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Reads the file once and computes every added digest. With no digests added the file is not
+     * read and the result is empty.
+     *
+     * @param path File to digest
+     * @return {@link DigestResult}
+     * @throws IOException
+     */
+    public DigestResult digest(Path path) throws IOException {
+        List<String> names = new ArrayList<>(lanes.keySet());
+        List<Lane> active = new ArrayList<>();
+        for(Supplier<Lane> factory : lanes.values()) {
+            active.add(factory.get());
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(active.isEmpty()) {
+                // no lane would return chunks to the free queue
+                return new DigestResult(new LinkedHashMap<>(), size);
+            }
+            if(size <= bufferSize) {
+                // single buffer, nothing to overlap
+                return digestInline(channel, names, active);
+            }
+
+            BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+            for(int i = 0; i < BUFFER_COUNT; i++) {
+                free.add(new Chunk(bufferSize));
+            }
+            List<Future<byte[]>> results = new ArrayList<>();
+            for(Lane lane : active) {
+                results.add(executor.submit(() -> drain(lane, free)));
+            }
+
+            long total = 0;
+            Chunk end = new Chunk(0);
+            end.length = -1;
+            try {
+                while(true) {
+                    Chunk chunk = free.take();
+                    chunk.length = fill(channel, chunk.data);
+                    if(chunk.length <= 0) {
+                        break;
+                    }
+                    total += chunk.length;
+                    chunk.pending.set(active.size());
+                    for(Lane lane : active) {
+                        lane.queue.put(chunk);
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while digesting: " + path);
+            }
+            finally {
+                // always release lanes so worker threads return
+                for(Lane lane : active) {
+                    lane.queue.offer(end);
+                }
+            }
+
+            Map<String, byte[]> values = new LinkedHashMap<>();
+            try {
+                for(int i = 0; i < names.size(); i++) {
+                    values.put(names.get(i), results.get(i).get());
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while digesting: " + path);
+            }
+            catch (ExecutionException e) {
+                throw new IOException("Unable to digest file: " + path, e.getCause());
+            }
+            return new DigestResult(values, total);
+        }
+    }
+
+    /**
+     * Shuts down digest threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private DigestResult digestInline(FileChannel channel, List<String> names, List<Lane> active) throws IOException {
+        byte[] data = new byte[(int)Math.max(channel.size(), 1)];
+        int length = Math.max(fill(channel, data), 0);
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        for(int i = 0; i < names.size(); i++) {
+            active.get(i).update(data, length);
+            values.put(names.get(i), active.get(i).finish());
+        }
+        return new DigestResult(values, length);
+    }
+
+    /**
+     * Feeds chunks into the lane until end of file. The last lane to finish with a chunk
+     * returns it to the reader. Keeps draining after a failure so the reader never stalls.
+     */
+    private static byte[] drain(Lane lane, BlockingQueue<Chunk> free) throws InterruptedException {
+        RuntimeException failure = null;
+        while(true) {
+            Chunk chunk = lane.queue.take();
+            if(chunk.length < 0) {
+                break;
+            }
+            if(failure == null) {
+                try {
+                    lane.update(chunk.data, chunk.length);
+                }
+                catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            if(chunk.pending.decrementAndGet() == 0) {
+                free.put(chunk);
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+        return lane.finish();
+    }
+
+    /**
+     * Reads until buffer is full or end of file.
+     *
+     * @return Bytes read, -1 if already at end of file
+     */
+    private static int fill(FileChannel channel, byte[] data) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        while(buf.hasRemaining()) {
+            if(channel.read(buf) < 0) {
+                break;
+            }
+        }
+        return buf.position() == 0 ? -1 : buf.position();
+    }
+}
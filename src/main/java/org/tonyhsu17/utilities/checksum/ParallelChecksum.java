@@ -0,0 +1,138 @@
+package org.tonyhsu17.utilities.checksum;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+
+
+
+/**
+ * Computes the CRC32 of a single file by splitting it into fixed-size ranges, checksumming the
+ * ranges in parallel on a {@link ForkJoinPool} and merging them with {@link CRC32Combiner}.
+ * Result is identical to a sequential CRC32 of the file.
+ * <p>
+ * Larger chunks and lower parallelism suit spinning disks, smaller chunks and higher parallelism
+ * suit SSD/NVMe storage.
+ *
+ * @author Tony Hsu
+ */
+public class ParallelChecksum implements Closeable {
+    public static final long DEFAULT_CHUNK_SIZE = 64L << 20; // 64mb
+    private long chunkSize;
+    private ChecksumEngine engine;
+    private ForkJoinPool pool;
+
+    /**
+     * Initializes with {@link #DEFAULT_CHUNK_SIZE} and one thread per processor.
+     */
+    public ParallelChecksum() {
+        this(DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes parallel checksum.
+     *
+     * @param chunkSize   Size of each range in bytes
+     * @param parallelism Number of ranges to read concurrently
+     */
+    public ParallelChecksum(long chunkSize, int parallelism) {
+        if(chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        engine = new ChecksumEngine();
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Override engine used to read each range. Default is {@link ChecksumEngine#DEFAULT_STRATEGY}
+     *
+     * @param engine {@link ChecksumEngine}
+     * @return
+     */
+    public ParallelChecksum setEngine(ChecksumEngine engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    /**
+     * Calculates the CRC32 value of a file.
+     *
+     * @param path File to compute the CRC value
+     * @return CRC value as unsigned 32 bit value
+     * @throws IOException
+     */
+    public long crc32(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size <= chunkSize) {
+                CRC32 crc = new CRC32();
+                engine.update(crc, channel, 0, size);
+                return crc.getValue();
+            }
+            long chunks = (size + chunkSize - 1) / chunkSize;
+            try {
+                return pool.invoke(new RangeTask(channel, size, 0, chunks));
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Shuts down the worker pool.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Computes CRC of chunks [from, to), splitting in half until a single chunk remains.
+     * Positional reads on a shared {@link FileChannel} are thread-safe.
+     */
+    private class RangeTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        private final FileChannel channel;
+        private final long size;
+        private final long from;
+        private final long to;
+
+        RangeTask(FileChannel channel, long size, long from, long to) {
+            this.channel = channel;
+            this.size = size;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if(to - from == 1) {
+                long position = from * chunkSize;
+                CRC32 crc = new CRC32();
+                try {
+                    engine.update(crc, channel, position, Math.min(chunkSize, size - position));
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return crc.getValue();
+            }
+            long mid = (from + to) >>> 1;
+            RangeTask left = new RangeTask(channel, size, from, mid);
+            RangeTask right = new RangeTask(channel, size, mid, to);
+            left.fork();
+            long rightCrc = right.compute();
+            long leftCrc = left.join();
+            long rightLength = Math.min(to * chunkSize, size) - mid * chunkSize;
+            return CRC32Combiner.combine(leftCrc, rightCrc, rightLength);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.tonyhsu17.utilities.checksum;
+
+/**
+ * Throughput summary of a {@link ChecksumScanner} run.
+ *
+ * @author Tony Hsu
+ */
+public class ScanStatistics {
+    private final long files;
+    private final long failed;
+    private final long bytes;
+    private final long elapsedNanos;
+
+    public ScanStatistics(long files, long failed, long bytes, long elapsedNanos) {
+        this.files = files;
+        this.failed = failed;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return Number of files checksummed successfully
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * @return Number of files that could not be read
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return Total bytes read
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1000000;
+    }
+
+    public double getFilesPerSecond() {
+        return elapsedNanos == 0 ? 0 : files * 1e9 / elapsedNanos;
+    }
+
+    public double getMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos / (1024 * 1024);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files (%d failed), %.1f MB in %d ms: %.1f files/s, %.1f MB/s",
+            files, failed, bytes / (1024.0 * 1024), getElapsedMillis(), getFilesPerSecond(), getMegabytesPerSecond());
+    }
+}
@@ -0,0 +1,72 @@
+package org.tonyhsu17.utilities.checksum;
+
+import java.nio.file.Path;
+
+
+
+/**
+ * Struct holding the outcome of verifying one file against its expected CRC32.
+ *
+ * @author Tony Hsu
+ */
+public class VerifyResult {
+    /**
+     * Outcome of a verification.
+     */
+    public static enum Status {
+        /** CRC32 matched */
+        PASS,
+        /** CRC32 did not match */
+        FAIL,
+        /** File listed in an .sfv does not exist */
+        MISSING,
+        /** File exists but could not be read, or its .sfv could not be read */
+        ERROR
+    }
+
+    private final Path path;
+    private final Path source;
+    private final long expected;
+    private final long actual;
+    private final Status status;
+
+    public VerifyResult(Path path, Path source, long expected, long actual, Status status) {
+        this.path = path;
+        this.source = source;
+        this.expected = expected;
+        this.actual = actual;
+        this.status = status;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return Where the expected CRC came from, the .sfv file or the file itself for name tags
+     */
+    public Path getSource() {
+        return source;
+    }
+
+    public long getExpected() {
+        return expected;
+    }
+
+    /**
+     * @return Computed CRC32, -1 if file was missing or unreadable
+     */
+    public long getActual() {
+        return actual;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return status + " " + path + (status == Status.FAIL
+            ? String.format(" expected %08X but was %08X", expected, actual) : "");
+    }
+}
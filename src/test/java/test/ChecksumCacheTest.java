@@ -0,0 +1,112 @@
+package test;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.ChecksumCache;
+import org.tonyhsu17.utilities.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+
+
+/**
+ * Unit Tests for {@link ChecksumCache}
+ *
+ * @author Tony Hsu
+ *
+ */
+public class ChecksumCacheTest {
+    private static final String testDir = "testFolder";
+    private static final String cacheName = "checksumTestCache.bin";
+    private File[] files = new File[4];
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() throws IOException {
+        new File(testDir).mkdirs();
+        for(int i = 0; i < files.length; i++) {
+            files[i] = new File(testDir, "cached" + i + ".txt");
+            write(files[i], "cached file " + i);
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() {
+        for(File file : files) {
+            file.delete();
+        }
+        new File(testDir, cacheName).delete();
+        new File(testDir).deleteOnExit();
+    }
+
+    @BeforeMethod(alwaysRun = true)
+    public void beforeMethod() {
+        new File(testDir, cacheName).delete();
+    }
+
+    @Test
+    public void testSaveAndReload() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        ChecksumCache cache = new ChecksumCache(testDir, cacheName);
+        for(File file : files) {
+            softAssert.assertFalse(cache.isCached(file));
+            softAssert.assertEquals(String.format("%08x", cache.getCRC32(file)), FileUtils.getCRC32(file));
+        }
+        cache.save();
+
+        cache = new ChecksumCache(testDir, cacheName);
+        softAssert.assertEquals(cache.size(), files.length);
+        for(File file : files) {
+            softAssert.assertTrue(cache.isCached(file), file + " not cached");
+            softAssert.assertEquals(String.format("%08x", cache.getCRC32(file)), FileUtils.getCRC32(file));
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testModifiedFile() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        File file = files[0];
+        ChecksumCache cache = new ChecksumCache(testDir, cacheName);
+        long before = cache.getCRC32(file);
+
+        write(file, "changed contents");
+        file.setLastModified(file.lastModified() + 2000);
+        softAssert.assertFalse(cache.isCached(file));
+        long after = cache.getCRC32(file);
+        softAssert.assertNotEquals(after, before);
+        softAssert.assertEquals(String.format("%08x", after), FileUtils.getCRC32(file));
+        softAssert.assertAll();
+        write(file, "cached file 0");
+    }
+
+    @Test
+    public void testEvictionAndInvalidate() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        ChecksumCache cache = new ChecksumCache(testDir, cacheName, 2);
+        cache.getCRC32(files[0]);
+        cache.getCRC32(files[1]);
+        cache.getCRC32(files[0]); // files[1] is now least recently used
+        cache.getCRC32(files[2]);
+        softAssert.assertTrue(cache.isCached(files[0]));
+        softAssert.assertFalse(cache.isCached(files[1]));
+        softAssert.assertTrue(cache.isCached(files[2]));
+
+        softAssert.assertTrue(cache.invalidate(files[0]));
+        softAssert.assertFalse(cache.isCached(files[0]));
+        cache.invalidateAll();
+        softAssert.assertEquals(cache.size(), 0);
+        softAssert.assertAll();
+    }
+
+    private static void write(File file, String data) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(data.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
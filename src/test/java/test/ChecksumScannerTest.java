@@ -0,0 +1,102 @@
+package test;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.FileUtils;
+import org.tonyhsu17.utilities.checksum.ChecksumResult;
+import org.tonyhsu17.utilities.checksum.ChecksumScanner;
+import org.tonyhsu17.utilities.checksum.ChecksumScanner.ManifestFormat;
+import org.tonyhsu17.utilities.checksum.ScanStatistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+
+/**
+ * Unit Tests for {@link ChecksumScanner}
+ *
+ * @author Tony Hsu
+ *
+ */
+public class ChecksumScannerTest {
+    private static final String testDir = "testFolder/scanTree";
+    private static final int FILE_COUNT = 30;
+    private Path root = Paths.get(testDir);
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() throws IOException {
+        for(int i = 0; i < FILE_COUNT; i++) {
+            Path dir = root.resolve("sub" + (i % 3));
+            Files.createDirectories(dir);
+            Files.write(dir.resolve("file" + i + ".txt"), ("content of file " + i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testScanCallback() throws IOException {
+        Map<Path, ChecksumResult> results = new ConcurrentHashMap<>();
+        ScanStatistics stats = new ChecksumScanner(4).scan(root, r -> results.put(r.getPath(), r));
+
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertEquals(stats.getFiles(), FILE_COUNT);
+        softAssert.assertEquals(stats.getFailed(), 0);
+        softAssert.assertEquals(results.size(), FILE_COUNT);
+        for(ChecksumResult r : results.values()) {
+            softAssert.assertEquals(r.getCRC32Hex().toLowerCase(), FileUtils.getCRC32(r.getPath().toFile()), r.toString());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testStream() {
+        try (Stream<ChecksumResult> stream = new ChecksumScanner(2).stream(root)) {
+            SoftAssert softAssert = new SoftAssert();
+            softAssert.assertEquals(stream.filter(ChecksumResult::isSuccess).count(), (long)FILE_COUNT);
+            softAssert.assertAll();
+        }
+        try (Stream<ChecksumResult> stream = new ChecksumScanner(2).stream(root)) {
+            // stop early without draining
+            SoftAssert softAssert = new SoftAssert();
+            softAssert.assertEquals(stream.limit(3).count(), 3L);
+            softAssert.assertAll();
+        }
+    }
+
+    @Test
+    public void testManifest() throws IOException {
+        Path manifest = Paths.get("testFolder", "scan.sfv");
+        ScanStatistics stats = new ChecksumScanner(3).writeManifest(root, manifest, ManifestFormat.SFV);
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        List<String> entries = lines.stream().filter(l -> !l.startsWith(";")).collect(Collectors.toList());
+
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertEquals(entries.size(), FILE_COUNT);
+        softAssert.assertTrue(lines.get(lines.size() - 1).contains(stats.getFiles() + " files"));
+        for(String entry : entries) {
+            int split = entry.lastIndexOf(' ');
+            File file = root.resolve(entry.substring(0, split)).toFile();
+            softAssert.assertEquals(entry.substring(split + 1).toLowerCase(), FileUtils.getCRC32(file), entry);
+        }
+        softAssert.assertAll();
+        new File(manifest.toString()).delete();
+    }
+}
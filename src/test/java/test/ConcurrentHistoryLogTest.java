@@ -0,0 +1,190 @@
+package test;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.ConcurrentHistoryLog;
+import org.tonyhsu17.utilities.HistoryLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+
+/**
+ * Unit Tests for {@link ConcurrentHistoryLog}
+ *
+ * @author Tony Hsu
+ *
+ */
+public class ConcurrentHistoryLogTest {
+    private static final String testDir = "testFolder";
+    private static final String testFileName = "concurrentHistoryTestFile.txt";
+    private static final String filePath = testDir + "/" + testFileName;
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() {
+        new File(testDir).mkdirs();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() {
+        new File(filePath).delete();
+        new File(testDir).deleteOnExit();
+    }
+
+    @BeforeMethod(alwaysRun = true)
+    public void beforeMethod() {
+        new File(filePath).delete();
+    }
+
+    @Test
+    public void testFifoAndRemove() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        ConcurrentHistoryLog hl = new ConcurrentHistoryLog(testDir, testFileName, 3, false);
+        for(String entry : new String[] {"a", "b", "c", "d"}) {
+            hl.add(entry);
+        }
+        softAssert.assertFalse(hl.contains("a"));
+        softAssert.assertTrue(hl.contains("d"));
+        softAssert.assertTrue(hl.remove("c"));
+        softAssert.assertFalse(hl.remove("c"));
+        hl.add("e");
+        hl.add("f"); // evicts b
+        softAssert.assertEquals(hl.getSavedList(), Arrays.asList("d", "e", "f"));
+        softAssert.assertEquals(hl.size(), 3);
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        ConcurrentHistoryLog hl = new ConcurrentHistoryLog(testDir, testFileName, 100000, false);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int t = 0; t < 4; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for(int i = 0; i < 5000; i++) {
+                    hl.add("t" + thread + "-" + i);
+                    hl.add("shared-" + i);
+                    hl.contains("shared-" + (i / 2));
+                }
+            }));
+        }
+        for(Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertEquals(hl.size(), 4 * 5000 + 5000);
+        softAssert.assertEquals(hl.getSavedList().size(), 4 * 5000 + 5000);
+        softAssert.assertTrue(hl.contains("t3-4999"));
+        softAssert.assertTrue(hl.contains("shared-0"));
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testConcurrentRemoveAndEvict() throws Exception {
+        ConcurrentHistoryLog hl = new ConcurrentHistoryLog(testDir, testFileName, 20, false);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int t = 0; t < 4; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for(int i = 0; i < 20000; i++) {
+                    String key = "k" + ((i * 7 + thread) % 40);
+                    if(thread % 2 == 0) {
+                        hl.add(key); // evicts once past 20
+                    }
+                    else {
+                        hl.remove(key);
+                    }
+                }
+            }));
+        }
+        for(Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        SoftAssert softAssert = new SoftAssert();
+        List<String> saved = hl.getSavedList();
+        softAssert.assertEquals(hl.size(), saved.size(), "size matches entries");
+        for(int i = 0; i < 40; i++) {
+            softAssert.assertEquals(hl.contains("k" + i), saved.contains("k" + i), "k" + i);
+        }
+        // push every old occurrence out, stale counts or tombstones would keep keys alive
+        for(int i = 0; i < 40; i++) {
+            hl.add("fresh" + i);
+        }
+        softAssert.assertEquals(hl.size(), 20);
+        for(int i = 0; i < 40; i++) {
+            softAssert.assertFalse(hl.contains("k" + i), "k" + i + " evicted");
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testSnapshotUnderContention() throws Exception {
+        ConcurrentHistoryLog hl = new ConcurrentHistoryLog(testDir, testFileName, 64, false);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for(int i = 0; i < 200000; i++) {
+                String key = "h" + (i % 8);
+                hl.remove(key);
+                hl.add(key); // re-added key has an old tombstoned occurrence in the queue
+                hl.add("fill" + i); // evicts
+            }
+            done.set(true);
+        });
+        writer.start();
+        SoftAssert softAssert = new SoftAssert();
+        int duplicates = 0;
+        while(!done.get()) {
+            List<String> snapshot = hl.getSavedList();
+            if(new HashSet<>(snapshot).size() != snapshot.size()) {
+                duplicates++;
+            }
+        }
+        writer.join();
+        softAssert.assertEquals(duplicates, 0, "snapshots with duplicate entries");
+        List<String> saved = hl.getSavedList();
+        softAssert.assertEquals(saved.size(), hl.size(), "every live entry once");
+        for(int i = 0; i < 8; i++) {
+            softAssert.assertTrue(saved.contains("h" + i), "live h" + i);
+        }
+        for(String entry : saved) {
+            softAssert.assertTrue(hl.contains(entry), entry + " is live");
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testSaveCompatibleWithHistoryLog() throws IOException {
+        ConcurrentHistoryLog hl = new ConcurrentHistoryLog(testDir, testFileName, 10, true);
+        hl.add("a");
+        hl.add("b", "1");
+        hl.add("a");
+        hl.save();
+
+        HistoryLog plain = new HistoryLog(testDir, testFileName, 10, true);
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertEquals(plain.getSavedList(), Arrays.asList("a", "b1", "a"));
+        plain.add("c");
+        plain.save();
+        softAssert.assertEquals(new ConcurrentHistoryLog(testDir, testFileName, 10, true).getSavedList(),
+            Arrays.asList("a", "b1", "a", "c"));
+        softAssert.assertAll();
+    }
+}
@@ -0,0 +1,136 @@
+package test;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.FileUtils;
+import org.tonyhsu17.utilities.checksum.CrcVerifier;
+import org.tonyhsu17.utilities.checksum.ScanStatistics;
+import org.tonyhsu17.utilities.checksum.VerifyResult;
+import org.tonyhsu17.utilities.checksum.VerifyResult.Status;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+
+
+/**
+ * Unit Tests for {@link CrcVerifier}
+ *
+ * @author Tony Hsu
+ *
+ */
+public class CrcVerifierTest {
+    private static final String testDir = "testFolder/verifyTree";
+    private Path root = Paths.get(testDir);
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() throws IOException {
+        Files.createDirectories(root);
+        Path temp = root.resolve("temp.bin");
+        Files.write(temp, "episode one".getBytes(StandardCharsets.UTF_8));
+        String crc = FileUtils.getCRC32(temp.toFile()).toUpperCase();
+        Files.move(temp, root.resolve("Show - 01 [" + crc + "].mkv"));
+        Files.write(root.resolve("Show - 02 [00000000].mkv"), "episode two".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("untagged.mkv"), "no tag".getBytes(StandardCharsets.UTF_8));
+
+        Path listed = root.resolve("listed.txt");
+        Files.write(listed, "listed".getBytes(StandardCharsets.UTF_8));
+        String sfv = "; comment\n"
+                     + "listed.txt " + FileUtils.getCRC32(listed.toFile()).toUpperCase() + "\n"
+                     + "gone.txt 12345678\n";
+        Files.write(root.resolve("check.sfv"), sfv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testFindTag() {
+        CrcVerifier verifier = new CrcVerifier(1);
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertEquals(verifier.findTag("Show - 01 [1A2B3C4D].mkv"), 0x1a2b3c4dL);
+        softAssert.assertEquals(verifier.findTag("[Group] Show (abcdef01).mkv"), 0xabcdef01L);
+        softAssert.assertEquals(verifier.findTag("Show - 01.mkv"), -1L);
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testVerify() throws IOException {
+        Map<String, Status> results = new ConcurrentHashMap<>();
+        AtomicLong lastCompleted = new AtomicLong();
+        ScanStatistics stats = new CrcVerifier(2)
+            .setProgressListener((completed, submitted) -> lastCompleted.set(completed), 1)
+            .verify(root, r -> results.put(r.getPath().getFileName().toString(), r.getStatus()));
+
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertEquals(results.size(), 4, results.toString());
+        softAssert.assertEquals(results.get("Show - 02 [00000000].mkv"), Status.FAIL);
+        softAssert.assertEquals(results.get("listed.txt"), Status.PASS);
+        softAssert.assertEquals(results.get("gone.txt"), Status.MISSING);
+        softAssert.assertEquals(results.values().stream().filter(s -> s == Status.PASS).count(), 2L);
+        softAssert.assertEquals(stats.getFailed(), 2L);
+        softAssert.assertEquals(lastCompleted.get(), 4L);
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testCancel() throws IOException {
+        CrcVerifier verifier = new CrcVerifier(1);
+        AtomicLong count = new AtomicLong();
+        verifier.verify(root, (VerifyResult r) -> {
+            count.incrementAndGet();
+            verifier.cancel();
+        });
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertTrue(verifier.isCancelled());
+        softAssert.assertTrue(count.get() < 4, "count: " + count.get());
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testUnreadableSfv() throws IOException {
+        Path dir = Paths.get("testFolder/verifyBadSfv");
+        Files.createDirectories(dir);
+        Path listed = dir.resolve("listed.txt");
+        Files.write(listed, "listed".getBytes(StandardCharsets.UTF_8));
+        byte[] head = ("listed.txt " + FileUtils.getCRC32(listed.toFile()).toUpperCase() + "\n")
+            .getBytes(StandardCharsets.UTF_8);
+        byte[] sfv = new byte[head.length + 3];
+        System.arraycopy(head, 0, sfv, 0, head.length);
+        sfv[head.length] = (byte)0xC3; // truncated UTF-8 sequence
+        sfv[head.length + 1] = (byte)0x28;
+        sfv[head.length + 2] = '\n';
+        Files.write(dir.resolve("bad.sfv"), sfv);
+
+        Map<String, Status> results = new ConcurrentHashMap<>();
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            ScanStatistics stats = new CrcVerifier(2)
+                .verify(dir, r -> results.put(r.getPath().getFileName().toString(), r.getStatus()));
+            softAssert.assertEquals(results.get("bad.sfv"), Status.ERROR, results.toString());
+            softAssert.assertEquals(stats.getFailed(), 1L);
+        }
+        catch (IOException e) {
+            softAssert.fail("walk aborted by sfv: " + e.getMessage());
+        }
+        finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+        }
+        softAssert.assertAll();
+    }
+}
@@ -0,0 +1,91 @@
+package test;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.checksum.DuplicateFinder;
+import org.tonyhsu17.utilities.checksum.DuplicateGroup;
+import org.tonyhsu17.utilities.checksum.MultiDigest.Algorithm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+
+
+/**
+ * Unit Tests for {@link DuplicateFinder}
+ *
+ * @author Tony Hsu
+ *
+ */
+public class DuplicateFinderTest {
+    private static final String testDir = "testFolder/dupTree";
+    private Path root = Paths.get(testDir);
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() throws IOException {
+        Files.createDirectories(root.resolve("nested"));
+        byte[] big = new byte[20000];
+        Arrays.fill(big, (byte)'x');
+        Files.write(root.resolve("big1.bin"), big);
+        Files.write(root.resolve("nested/big2.bin"), big);
+        // same size, same head and tail, different middle
+        big[10000] = 'y';
+        Files.write(root.resolve("bigOther.bin"), big);
+
+        Files.write(root.resolve("small1.txt"), "hello".getBytes());
+        Files.write(root.resolve("small2.txt"), "hello".getBytes());
+        Files.write(root.resolve("small3.txt"), "hellp".getBytes());
+        Files.write(root.resolve("unique.txt"), "unique size".getBytes());
+        Files.write(root.resolve("empty1.txt"), new byte[0]);
+        Files.write(root.resolve("empty2.txt"), new byte[0]);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testFindDuplicates() throws IOException {
+        for(Algorithm algorithm : new Algorithm[] {Algorithm.CRC32, Algorithm.SHA_256}) {
+            List<DuplicateGroup> groups = new CopyOnWriteArrayList<>();
+            new DuplicateFinder(2).setSampleSize(1024).setAlgorithm(algorithm).find(root, groups::add);
+
+            SoftAssert softAssert = new SoftAssert();
+            softAssert.assertEquals(groups.size(), 2, algorithm + " " + groups);
+            for(DuplicateGroup group : groups) {
+                Set<String> names = new HashSet<>();
+                group.getPaths().forEach(p -> names.add(p.getFileName().toString()));
+                if(group.getSize() == 20000) {
+                    softAssert.assertEquals(names, new HashSet<>(Arrays.asList("big1.bin", "big2.bin")));
+                    softAssert.assertEquals(group.getWastedBytes(), 20000L);
+                }
+                else {
+                    softAssert.assertEquals(names, new HashSet<>(Arrays.asList("small1.txt", "small2.txt")));
+                }
+            }
+            softAssert.assertAll();
+        }
+    }
+
+    @Test
+    public void testEmptyFiles() throws IOException {
+        List<DuplicateGroup> groups = new CopyOnWriteArrayList<>();
+        new DuplicateFinder(1).setMinSize(0).find(root, groups::add);
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertEquals(groups.size(), 3);
+        softAssert.assertAll();
+    }
+}
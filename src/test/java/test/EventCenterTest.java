@@ -0,0 +1,472 @@
+package test;
+
+import org.testng.annotations.Test;
+import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.EventCenter;
+import org.tonyhsu17.utilities.EventCenter.Backpressure;
+import org.tonyhsu17.utilities.EventCenter.Events;
+import org.tonyhsu17.utilities.MailboxStatistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+/**
+ * Unit Tests for {@link EventCenter}
+ *
+ * @author Tony Hsu
+ *
+ */
+public class EventCenterTest {
+    /**
+     * Ids with equal hash codes
+     */
+    private static class CollidingId {
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    @Test
+    public void testSubscribeAndPost() {
+        SoftAssert softAssert = new SoftAssert();
+        EventCenter center = EventCenter.getInstance();
+        List<Object> received = new ArrayList<>();
+        Object first = new CollidingId();
+        Object second = new CollidingId();
+        center.subscribeEvent(Events.SETTINGS_CHANGED, first, obj -> received.add("first " + obj));
+        center.subscribeEvent(Events.SETTINGS_CHANGED, second, obj -> received.add("second " + obj));
+        center.subscribeEvent(Events.SETTINGS_CHANGED, first, obj -> received.add("ignored " + obj));
+        center.subscribeEvent(Events.TRIGGER_AUTO_FILL, first, obj -> received.add("fill " + obj));
+
+        center.postEvent(Events.SETTINGS_CHANGED, 1);
+        softAssert.assertEquals(received, Arrays.asList("first 1", "second 1"), "colliding ids both subscribed");
+
+        received.clear();
+        center.unsubscribeEvent(Events.SETTINGS_CHANGED, second);
+        center.postEvent(Events.SETTINGS_CHANGED, 2);
+        center.postEvent(Events.TRIGGER_AUTO_FILL, 3);
+        softAssert.assertEquals(received, Arrays.asList("first 2", "fill 3"));
+
+        received.clear();
+        center.unsubscribeAllEvents(first);
+        center.postEvent(Events.SETTINGS_CHANGED, 4);
+        center.postEvent(Events.TRIGGER_AUTO_FILL, 5);
+        softAssert.assertEquals(received, Arrays.asList());
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testSubscribeWhilePosting() throws Exception {
+        SoftAssert softAssert = new SoftAssert();
+        EventCenter center = EventCenter.getInstance();
+        AtomicInteger stableCalls = new AtomicInteger();
+        Object stable = new Object();
+        center.subscribeEvent(Events.TRIGGER_AUTO_FILL, stable, obj -> stableCalls.incrementAndGet());
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<?>> churn = new ArrayList<>();
+            for(int t = 0; t < 2; t++) {
+                churn.add(pool.submit(() -> {
+                    while(running.get()) {
+                        Object id = new Object();
+                        center.subscribeEvent(Events.TRIGGER_AUTO_FILL, id, obj -> {});
+                        center.unsubscribeEvent(Events.TRIGGER_AUTO_FILL, id);
+                    }
+                }));
+            }
+            Future<?> poster = pool.submit(() -> {
+                for(int i = 0; i < 100000; i++) {
+                    center.postEvent(Events.TRIGGER_AUTO_FILL, i);
+                }
+            });
+            poster.get();
+            running.set(false);
+            for(Future<?> f : churn) {
+                f.get();
+            }
+        }
+        finally {
+            pool.shutdownNow();
+            center.unsubscribeAllEvents(stable);
+        }
+        softAssert.assertEquals(stableCalls.get(), 100000, "no post lost by concurrent subscribers");
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testAsyncDispatch() throws Exception {
+        SoftAssert softAssert = new SoftAssert();
+        EventCenter center = EventCenter.getInstance();
+        Object id = new Object();
+        List<Object> received = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1000);
+        Thread poster = Thread.currentThread();
+        AtomicBoolean onPoster = new AtomicBoolean();
+        center.subscribeEvent(Events.SETTINGS_CHANGED, id, obj -> {
+            received.add(obj);
+            onPoster.compareAndSet(false, Thread.currentThread() == poster);
+            done.countDown();
+        });
+        try {
+            center.enableAsync(64, 1, Backpressure.BLOCK);
+            for(int i = 0; i < 1000; i++) {
+                softAssert.assertTrue(center.postEventAsync(Events.SETTINGS_CHANGED, i));
+            }
+            softAssert.assertTrue(done.await(10, TimeUnit.SECONDS), "all delivered");
+            List<Object> expected = new ArrayList<>();
+            for(int i = 0; i < 1000; i++) {
+                expected.add(i);
+            }
+            softAssert.assertEquals(received, expected, "single consumer keeps order");
+            softAssert.assertFalse(onPoster.get(), "delivered on consumer");
+            softAssert.assertEquals(center.getDroppedEvents(), 0L);
+        }
+        finally {
+            center.disableAsync();
+            center.unsubscribeAllEvents(id);
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testAsyncSubscriberFailure() throws Exception {
+        SoftAssert softAssert = new SoftAssert();
+        EventCenter center = EventCenter.getInstance();
+        Object failing = new Object();
+        Object id = new Object();
+        CountDownLatch done = new CountDownLatch(2);
+        center.subscribeEvent(Events.SETTINGS_CHANGED, failing, obj -> {
+            throw new IllegalStateException("subscriber failure");
+        });
+        center.subscribeEvent(Events.SETTINGS_CHANGED, id, obj -> done.countDown());
+        try {
+            center.enableAsync(16, 1, Backpressure.BLOCK);
+            center.postEventAsync(Events.SETTINGS_CHANGED, 1);
+            center.postEventAsync(Events.SETTINGS_CHANGED, 2);
+            softAssert.assertTrue(done.await(10, TimeUnit.SECONDS), "later subscriber still receives both");
+        }
+        finally {
+            center.disableAsync();
+            center.unsubscribeAllEvents(failing);
+            center.unsubscribeAllEvents(id);
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        SoftAssert softAssert = new SoftAssert();
+        EventCenter center = EventCenter.getInstance();
+        Object id = new Object();
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        try {
+            for(Backpressure policy : new Backpressure[] {Backpressure.DROP_NEWEST, Backpressure.DROP_OLDEST, Backpressure.CALLER_RUNS}) {
+                CountDownLatch started = new CountDownLatch(1);
+                CountDownLatch release = new CountDownLatch(1);
+                center.unsubscribeAllEvents(id);
+                center.subscribeEvent(Events.TRIGGER_AUTO_FILL, id, obj -> {
+                    if("stall".equals(obj)) {
+                        started.countDown();
+                        try {
+                            release.await();
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    received.add(obj);
+                });
+                center.enableAsync(4, 1, policy);
+                received.clear();
+                center.postEventAsync(Events.TRIGGER_AUTO_FILL, "stall");
+                started.await();
+                for(int i = 0; i < 6; i++) {
+                    center.postEventAsync(Events.TRIGGER_AUTO_FILL, i); // 4 fit while consumer is stalled
+                }
+                List<Object> onCaller = new ArrayList<>(received);
+                release.countDown();
+                center.disableAsync(); // delivers what is queued
+                if(policy == Backpressure.DROP_NEWEST) {
+                    softAssert.assertEquals(received, Arrays.asList("stall", 0, 1, 2, 3), policy.toString());
+                    softAssert.assertEquals(onCaller, Arrays.asList(), policy.toString());
+                }
+                else if(policy == Backpressure.DROP_OLDEST) {
+                    softAssert.assertEquals(received, Arrays.asList("stall", 2, 3, 4, 5), policy.toString());
+                }
+                else {
+                    softAssert.assertEquals(onCaller, Arrays.asList(4, 5), policy.toString());
+                    softAssert.assertEquals(received, Arrays.asList(4, 5, "stall", 0, 1, 2, 3), policy.toString());
+                }
+            }
+        }
+        finally {
+            center.disableAsync();
+            center.unsubscribeAllEvents(id);
+        }
+        softAssert.assertAll();
+    }
+
+    @Test(timeOut = 20000)
+    public void testAsyncFromConsumer() throws Exception {
+        SoftAssert softAssert = new SoftAssert();
+        EventCenter center = EventCenter.getInstance();
+        Object id = new Object();
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch stopped = new CountDownLatch(1);
+        CountDownLatch all = new CountDownLatch(10);
+        center.subscribeEvent(Events.TRIGGER_AUTO_FILL, id, obj -> {
+            if("start".equals(obj)) {
+                for(int i = 0; i < 10; i++) {
+                    center.postEventAsync(Events.TRIGGER_AUTO_FILL, i); // overflows the ring
+                }
+            }
+            else if("stop".equals(obj)) {
+                center.disableAsync();
+                stopped.countDown();
+            }
+            else {
+                received.add(obj);
+                all.countDown();
+            }
+        });
+        try {
+            center.enableAsync(2, 1, Backpressure.BLOCK);
+            center.postEventAsync(Events.TRIGGER_AUTO_FILL, "start");
+            center.postEventAsync(Events.TRIGGER_AUTO_FILL, "stop");
+            softAssert.assertTrue(stopped.await(10, TimeUnit.SECONDS), "disabled from a subscriber");
+            // the consumer delivers what it queued after the disabling subscriber returns
+            softAssert.assertTrue(all.await(10, TimeUnit.SECONDS), received.toString());
+        }
+        finally {
+            center.disableAsync();
+            center.unsubscribeAllEvents(id);
+        }
+        softAssert.assertAll();
+    }
+
+    private static class FileEvent {
+        final String path;
+
+        FileEvent(String path) {
+            this.path = path;
+        }
+    }
+
+    private interface Undoable {
+    }
+
+    private static class FileDeleted extends FileEvent implements Undoable {
+        FileDeleted(String path) {
+            super(path);
+        }
+    }
+
+    private interface Renamed {
+    }
+
+    private static class FileRenamed extends FileEvent implements Renamed {
+        FileRenamed(String path) {
+            super(path);
+        }
+    }
+
+    @Test
+    public void testTypedEvents() {
+        SoftAssert softAssert = new SoftAssert();
+        EventCenter center = EventCenter.getInstance();
+        Object id = new Object();
+        List<String> received = new ArrayList<>();
+        center.subscribe(FileEvent.class, id, event -> received.add("file " + event.path));
+        center.subscribe(Undoable.class, id, event -> received.add("undoable"));
+        center.subscribe(FileDeleted.class, id, event -> received.add("deleted " + event.path));
+        try {
+            center.post(new FileEvent("a"));
+            softAssert.assertEquals(received, Arrays.asList("file a"));
+
+            received.clear();
+            center.post(new FileDeleted("b"));
+            softAssert.assertEquals(received, Arrays.asList("deleted b", "file b", "undoable"), "supertypes, most specific first");
+
+            received.clear();
+            center.unsubscribe(FileEvent.class, id);
+            center.post(new FileDeleted("c"));
+            center.post("not subscribed");
+            softAssert.assertEquals(received, Arrays.asList("deleted c", "undoable"));
+
+            received.clear();
+            Object late = new Object();
+            center.subscribe(Object.class, late, event -> received.add("any " + event.getClass().getSimpleName()));
+            center.post(new FileDeleted("d")); // table cached before Object had subscribers
+            softAssert.assertEquals(received, Arrays.asList("deleted d", "undoable", "any FileDeleted"));
+            center.unsubscribeAllEvents(late);
+
+            received.clear();
+            center.post(new FileRenamed("r")); // caches a table without a Renamed topic
+            center.subscribe(Renamed.class, id, event -> received.add("renamed"));
+            center.post(new FileRenamed("s"));
+            softAssert.assertEquals(received, Arrays.asList("renamed"), "new topic invalidates cached tables");
+
+            received.clear();
+            center.postAsync(new FileEvent("e")); // async off, delivered synchronously
+            softAssert.assertEquals(received, Arrays.asList());
+            center.subscribe(FileEvent.class, id, event -> received.add("file " + event.path));
+            center.postAsync(new FileEvent("f"));
+            softAssert.assertEquals(received, Arrays.asList("file f"));
+        }
+        finally {
+            center.unsubscribeAllEvents(id);
+        }
+        center.post(new FileDeleted("g"));
+        softAssert.assertEquals(received, Arrays.asList("file f"), "all unsubscribed");
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        SoftAssert softAssert = new SoftAssert();
+        EventCenter center = EventCenter.getInstance();
+        Object id = new Object();
+        List<Object> latest = Collections.synchronizedList(new ArrayList<>());
+        List<List<Object>> batches = Collections.synchronizedList(new ArrayList<>());
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch delivered = new CountDownLatch(4); // immediate post and one window
+        center.subscribeEvent(Events.SETTINGS_CHANGED, id, obj -> {
+            latest.add(obj);
+            threads.add(Thread.currentThread().getName());
+            delivered.countDown();
+        });
+        center.subscribeBatch(Events.SETTINGS_CHANGED, id, list -> {
+            batches.add(list);
+            delivered.countDown();
+        });
+        try {
+            center.postEvent(Events.SETTINGS_CHANGED, 0);
+            softAssert.assertEquals(latest, Arrays.asList(0), "delivered right away");
+            softAssert.assertEquals(batches, Arrays.asList(Arrays.asList(0)), "one-element batch");
+            latest.clear();
+            batches.clear();
+
+            center.setCoalescing(Events.SETTINGS_CHANGED, 200, TimeUnit.MILLISECONDS);
+            for(int i = 1; i <= 100; i++) {
+                if(i % 2 == 0) {
+                    center.postEvent(Events.SETTINGS_CHANGED, i);
+                }
+                else {
+                    center.postEventAsync(Events.SETTINGS_CHANGED, i);
+                }
+            }
+            softAssert.assertEquals(latest, Arrays.asList(), "held until window ends");
+            softAssert.assertTrue(delivered.await(5, TimeUnit.SECONDS), "flushed by timer");
+            List<Object> all = new ArrayList<>();
+            for(int i = 1; i <= 100; i++) {
+                all.add(i);
+            }
+            softAssert.assertEquals(latest, Arrays.asList(100), "latest payload only");
+            softAssert.assertEquals(batches, Arrays.asList(all), "every payload in one batch");
+            softAssert.assertFalse(threads.contains("EventCenter-timer"), "subscribers never run on the timer");
+
+            latest.clear();
+            batches.clear();
+            center.postEvent(Events.SETTINGS_CHANGED, 101);
+            center.setCoalescing(Events.SETTINGS_CHANGED, 0, TimeUnit.MILLISECONDS); // delivers held post
+            softAssert.assertEquals(latest, Arrays.asList(101));
+            center.postEvent(Events.SETTINGS_CHANGED, 102);
+            softAssert.assertEquals(latest, Arrays.asList(101, 102));
+        }
+        finally {
+            center.setCoalescing(Events.SETTINGS_CHANGED, 0, TimeUnit.MILLISECONDS);
+            center.unsubscribeAllEvents(id);
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testMailboxes() throws Exception {
+        SoftAssert softAssert = new SoftAssert();
+        EventCenter center = EventCenter.getInstance();
+        Object slow = new Object();
+        Object fast = new Object();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(100);
+        List<Object> slowReceived = Collections.synchronizedList(new ArrayList<>());
+        List<Object> fastReceived = Collections.synchronizedList(new ArrayList<>());
+        center.subscribeEvent(Events.TRIGGER_AUTO_FILL, slow, obj -> {
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            slowReceived.add(obj);
+        });
+        center.subscribeEvent(Events.TRIGGER_AUTO_FILL, fast, obj -> {
+            fastReceived.add(obj);
+            fastDone.countDown();
+        });
+        center.subscribe(String.class, fast, str -> fastReceived.add(str));
+        Object failing = new Object();
+        center.subscribeEvent(Events.TRIGGER_AUTO_FILL, failing, obj -> {
+            if(Integer.valueOf(0).equals(obj)) {
+                throw new IllegalStateException("subscriber failure");
+            }
+        });
+        try {
+            softAssert.assertNull(center.getMailboxStatistics(fast), "no mailbox before a queued post");
+            center.enableMailboxes(128, 2);
+            List<Object> expected = new ArrayList<>();
+            for(int i = 0; i < 100; i++) {
+                center.postEventAsync(Events.TRIGGER_AUTO_FILL, i);
+                expected.add(i);
+            }
+            softAssert.assertTrue(fastDone.await(10, TimeUnit.SECONDS), "fast subscriber not held up by slow one");
+            softAssert.assertEquals(fastReceived, expected, "fifo per subscriber");
+            long deadline = System.currentTimeMillis() + 10000;
+            while(center.getMailboxStatistics(slow).getDepth() != 99 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10); // wait for the slow drain task to take its first event
+            }
+            for(int i = 100; i < 140; i++) {
+                center.postEventAsync(Events.TRIGGER_AUTO_FILL, i);
+                expected.add(i);
+            }
+            MailboxStatistics stats = center.getMailboxStatistics(slow);
+            softAssert.assertEquals(stats.getCapacity(), 128);
+            softAssert.assertEquals(stats.getDepth(), 128, "full while stalled");
+            softAssert.assertEquals(stats.getDropped(), 11L, "one in delivery, 128 queued");
+
+            center.postAsync("typed"); // same mailbox as its enum subscription
+            release.countDown();
+            center.disableMailboxes(); // delivers what is queued
+            softAssert.assertEquals(slowReceived, expected.subList(0, 129));
+            expected.add("typed");
+            softAssert.assertEquals(fastReceived, expected);
+            softAssert.assertEquals(center.getMailboxStatistics(fast).getDelivered(), 141L);
+            softAssert.assertEquals(center.getMailboxStatistics(fast).getDropped(), 0L);
+            MailboxStatistics failingStats = center.getMailboxStatistics(failing);
+            softAssert.assertEquals(failingStats.getFailed(), 1L);
+            softAssert.assertEquals(failingStats.getDelivered(), 139L - failingStats.getDropped(), "failure not counted as delivered");
+            softAssert.assertEquals(center.getMailboxStatistics(slow).getDepth(), 0);
+        }
+        finally {
+            release.countDown();
+            center.disableMailboxes();
+            center.unsubscribeAllEvents(slow);
+            center.unsubscribeAllEvents(fast);
+            center.unsubscribeAllEvents(failing);
+        }
+        softAssert.assertNull(center.getMailboxStatistics(fast), "released with last subscription");
+        softAssert.assertAll();
+    }
+}
@@ -0,0 +1,146 @@
+package test;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.FileUtils;
+import org.tonyhsu17.utilities.checksum.CRC32Combiner;
+import org.tonyhsu17.utilities.checksum.ChecksumEngine;
+import org.tonyhsu17.utilities.checksum.ChecksumEngine.Strategy;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+
+
+/**
+ * Unit Tests for {@link FileUtils}
+ *
+ * @author Tony Hsu
+ *
+ */
+public class FileUtilsTest {
+    private static final String testDir = "testFolder";
+    private static final File checkFile = new File(testDir, "crcCheck.txt");
+    private static final File randomFile = new File(testDir, "crcRandom.bin");
+    private static final File emptyFile = new File(testDir, "crcEmpty.bin");
+    private byte[] randomBytes;
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() throws IOException {
+        new File(testDir).mkdirs();
+        write(checkFile, "123456789".getBytes(StandardCharsets.US_ASCII));
+        randomBytes = new byte[3 * 1024 * 1024 + 17];
+        new Random(17).nextBytes(randomBytes);
+        write(randomFile, randomBytes);
+        write(emptyFile, new byte[0]);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() {
+        checkFile.delete();
+        randomFile.delete();
+        emptyFile.delete();
+        new File(testDir).deleteOnExit();
+    }
+
+    @Test
+    public void testKnownValue() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        for(Strategy strategy : Strategy.values()) {
+            softAssert.assertEquals(FileUtils.getCRC32(checkFile, 8, strategy), "cbf43926", strategy.name());
+            softAssert.assertEquals(FileUtils.getCRC32(emptyFile, 8, strategy), "00000000", strategy.name());
+        }
+        softAssert.assertEquals(FileUtils.getCRC32(checkFile), "cbf43926");
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testStrategiesMatch() throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(randomBytes);
+        SoftAssert softAssert = new SoftAssert();
+        for(Strategy strategy : Strategy.values()) {
+            // small windows to force multiple reads/maps
+            ChecksumEngine engine = new ChecksumEngine(strategy).setBufferSize(4096).setMapSize(1 << 20);
+            softAssert.assertEquals(engine.crc32(randomFile), crc.getValue(), strategy.name());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(randomBytes, 1000, 50000);
+        SoftAssert softAssert = new SoftAssert();
+        for(Strategy strategy : Strategy.values()) {
+            ChecksumEngine engine = new ChecksumEngine(strategy).setBufferSize(4096).setMapSize(8192);
+            softAssert.assertEquals(engine.crc32(randomFile.toPath(), 1000, 50000), crc.getValue(), strategy.name());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testCombine() {
+        CRC32 first = new CRC32();
+        first.update(randomBytes, 0, 12345);
+        CRC32 second = new CRC32();
+        second.update(randomBytes, 12345, randomBytes.length - 12345);
+        CRC32 whole = new CRC32();
+        whole.update(randomBytes);
+        Assert.assertEquals(CRC32Combiner.combine(first.getValue(), second.getValue(), randomBytes.length - 12345),
+            whole.getValue());
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        String expected = FileUtils.getCRC32(randomFile);
+        SoftAssert softAssert = new SoftAssert();
+        // uneven chunk sizes so last chunk is partial
+        for(long chunkSize : new long[] {7777, 4096, 100000, 1 << 20, 1L << 30}) {
+            softAssert.assertEquals(FileUtils.getCRC32Parallel(randomFile, 8, chunkSize, 4), expected, "chunk: " + chunkSize);
+        }
+        softAssert.assertEquals(FileUtils.getCRC32Parallel(emptyFile, 8, 4096, 2), "00000000");
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testPrimitiveAndHex() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertEquals(FileUtils.getCRC32Value(checkFile), 0xcbf43926L);
+        softAssert.assertEquals(FileUtils.getCRC32Value(emptyFile), 0L);
+        softAssert.assertEquals(FileUtils.toHex(0x1a2bL, 8), "00001a2b");
+        softAssert.assertEquals(FileUtils.toHex(0xcbf43926L, 4), "cbf43926");
+        softAssert.assertEquals(FileUtils.toHex(0, 0), "0");
+        softAssert.assertEquals(FileUtils.appendHex(new StringBuilder("crc="), 0xabL, 8).toString(), "crc=000000ab");
+
+        char[] buf = new char[10];
+        int written = FileUtils.toHex(0xcbf43926L, 8, buf, 1);
+        softAssert.assertEquals(written, 8);
+        softAssert.assertEquals(new String(buf, 1, written), "cbf43926");
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testMissingFile() {
+        try {
+            FileUtils.getCRC32(new File(testDir, "doesNotExist.bin"));
+            Assert.fail("expected IOException");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(data);
+        }
+    }
+}
@@ -5,12 +5,27 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.EvictionPolicy;
+import org.tonyhsu17.utilities.FilterStatistics;
 import org.tonyhsu17.utilities.HistoryLog;
 import org.tonyhsu17.utilities.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 
@@ -34,13 +49,22 @@ public class HistoryLogTest implements Logger {
 
     @AfterClass(alwaysRun = true)
     public void afterClass() {
-        new File(filePath).delete();
+        deleteLogFiles();
         new File(testDir).deleteOnExit();
     }
 
     @BeforeMethod(alwaysRun = true)
     public void beforeMethod() {
+        deleteLogFiles();
+    }
+
+    private void deleteLogFiles() {
         new File(filePath).delete();
+        new File(filePath + ".journal").delete();
+        new File(filePath + ".journal.old").delete();
+        new File(filePath + ".new").delete();
+        new File(filePath + ".tmp").delete();
+        new File(filePath + ".meta").delete();
     }
     
     @Test
@@ -194,4 +218,556 @@ public class HistoryLogTest implements Logger {
 
         softAssert.assertAll();
     }
+
+    @Test
+    public void testJournaledSave() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 3, false).setJournaled(true).setCompactionThreshold(100);
+            for(String entry : entries) {
+                hl.add(entry);
+            }
+            hl.remove("e");
+            hl.save();
+
+            softAssert.assertFalse(new File(filePath).exists(), "snapshot should not be written");
+            List<String> records = Files.readAllLines(Paths.get(filePath + ".journal"));
+            softAssert.assertEquals(records.get(0), "+a");
+            softAssert.assertEquals(records.get(3), "+d");
+            softAssert.assertEquals(records.get(4), "-a");
+            softAssert.assertEquals(records.get(records.size() - 1), "-e");
+
+            hl.add("g");
+            hl.save();
+            hl = new HistoryLog(testDir, testFileName, 3, false);
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("d", "f", "g"));
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testJournalCompaction() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 10, false).setJournaled(true).setCompactionThreshold(4);
+            for(String entry : entries) {
+                hl.add(entry);
+                hl.save();
+            }
+            hl.compact();
+            softAssert.assertFalse(new File(filePath + ".journal").exists(), "journal should be compacted");
+            softAssert.assertEquals(Files.readAllLines(Paths.get(filePath)), Arrays.asList(entries));
+
+            // torn last record from an interrupted append is ignored
+            hl.remove("a");
+            hl.save();
+            Files.write(Paths.get(filePath + ".journal"), "-b".getBytes(), StandardOpenOption.APPEND);
+            hl = new HistoryLog(testDir, testFileName, 10, false);
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("b", "c", "d", "e", "f"));
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testAppendAfterTornRecord() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 10, false).setJournaled(true);
+            hl.add("a");
+            hl.add("b");
+            hl.save();
+            Files.write(Paths.get(filePath + ".journal"), "+to".getBytes(), StandardOpenOption.APPEND);
+
+            hl = new HistoryLog(testDir, testFileName, 10, false).setJournaled(true);
+            hl.add("c");
+            hl.save(); // must start on a new line, not extend the torn record
+            softAssert.assertEquals(Files.readAllLines(Paths.get(filePath + ".journal")), Arrays.asList("+a", "+b", "+c"));
+            hl = new HistoryLog(testDir, testFileName, 10, false);
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("a", "b", "c"));
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testRecoverInterruptedCompaction() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            // new snapshot completed but old journal not yet removed
+            Files.write(Paths.get(filePath + ".new"), Arrays.asList("a", "b"));
+            Files.write(Paths.get(filePath + ".journal.old"), Arrays.asList("+a", "+b"));
+            Files.write(Paths.get(filePath + ".journal"), Arrays.asList("+c"));
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 10, true);
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("a", "b", "c"));
+            softAssert.assertFalse(new File(filePath + ".journal.old").exists());
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testDupEvictionKeepsLiveCopies() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 2, true);
+            hl.add("a");
+            hl.add("a");
+            hl.add("b"); // evicts first "a", second is still live
+            softAssert.assertTrue(hl.contains("a"), "a should still be in history");
+            hl.add("c"); // evicts last "a"
+            softAssert.assertFalse(hl.contains("a"), "a should be evicted");
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("b", "c"));
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testRandomOperationsMatchList() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 50, true, 64);
+            LinkedList<String> expected = new LinkedList<>();
+            Random random = new Random(42);
+            for(int i = 0; i < 5000; i++) {
+                String key = "k" + random.nextInt(80);
+                if(random.nextInt(3) == 0) {
+                    softAssert.assertEquals(hl.remove(key), expected.remove(key), "remove " + key);
+                }
+                else {
+                    hl.add(key);
+                    expected.add(key);
+                    if(expected.size() > 50) {
+                        expected.remove();
+                    }
+                }
+                softAssert.assertEquals(hl.contains(key), expected.contains(key), "contains " + key);
+            }
+            softAssert.assertEquals(hl.getSavedList(), expected);
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testAutoFlush() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 10, false).setJournaled(true)
+                .enableAutoFlush(1, TimeUnit.HOURS, 3);
+            hl.add("a");
+            hl.add("b");
+            softAssert.assertFalse(new File(filePath + ".journal").exists(), "below threshold should not flush");
+            hl.add("c"); // reaches threshold
+            long deadline = System.currentTimeMillis() + 5000;
+            while(!new File(filePath + ".journal").exists() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            hl.add("d");
+            hl.flush().get(5, TimeUnit.SECONDS);
+            hl.disableAutoFlush();
+            softAssert.assertFalse(new File(filePath + ".tmp").exists(), "temp file should be moved");
+            HistoryLog reloaded = new HistoryLog(testDir, testFileName, 10, false);
+            softAssert.assertEquals(reloaded.getSavedList(), Arrays.asList("a", "b", "c", "d"));
+        }
+        catch (IOException | InterruptedException | ExecutionException | TimeoutException e) {
+            softAssert.fail(e.toString());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testConcurrentAddsWithFlush() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 1000, false).setJournaled(true)
+                .setCompactionThreshold(200).enableAutoFlush(5, TimeUnit.MILLISECONDS, 50);
+            Thread[] threads = new Thread[4];
+            for(int t = 0; t < threads.length; t++) {
+                int id = t;
+                threads[t] = new Thread(() -> {
+                    for(int i = 0; i < 200; i++) {
+                        hl.add(id + "-" + i);
+                    }
+                });
+                threads[t].start();
+            }
+            for(Thread thread : threads) {
+                thread.join();
+            }
+            hl.flush().get(5, TimeUnit.SECONDS);
+            hl.disableAutoFlush();
+            hl.compact();
+            HistoryLog reloaded = new HistoryLog(testDir, testFileName, 1000, false);
+            softAssert.assertEquals(reloaded.getSavedList().size(), 800);
+            softAssert.assertEquals(reloaded.getSavedList(), hl.getSavedList());
+        }
+        catch (IOException | InterruptedException | ExecutionException | TimeoutException e) {
+            softAssert.fail(e.toString());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testBinaryFormat() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 5, true).setFormat(HistoryLog.Format.BINARY);
+            for(String entry : entries) {
+                hl.add(entry);
+            }
+            hl.add("f");
+            hl.add("\u00e9t\u00e9");
+            hl.save();
+            softAssert.assertEquals(Files.readAllBytes(Paths.get(filePath))[0], (byte)0x89, "binary magic");
+
+            hl = new HistoryLog(testDir, testFileName, 5, true);
+            softAssert.assertEquals(hl.getFormat(), HistoryLog.Format.BINARY);
+            softAssert.assertTrue(hl.contains("\u00e9t\u00e9"), "lookup before load");
+            softAssert.assertTrue(hl.contains("f"), "lookup before load");
+            softAssert.assertFalse(hl.contains("a"), "a should be evicted");
+            hl.add("g");
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("e", "f", "f", "\u00e9t\u00e9", "g"));
+            hl.save();
+            hl = new HistoryLog(testDir, testFileName, 5, true);
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("e", "f", "f", "\u00e9t\u00e9", "g"));
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testConvertFormat() {
+        SoftAssert softAssert = new SoftAssert();
+        String binaryPath = filePath + ".bin";
+        String textPath = filePath + ".txt";
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 10, false);
+            for(String entry : entries) {
+                hl.add(entry);
+            }
+            hl.save();
+            HistoryLog.convert(filePath, binaryPath, HistoryLog.Format.BINARY);
+            HistoryLog.convert(binaryPath, textPath, HistoryLog.Format.TEXT);
+            softAssert.assertEquals(Files.readAllLines(Paths.get(textPath)), Arrays.asList(entries));
+            hl = new HistoryLog(testDir, testFileName + ".bin", 10, false);
+            softAssert.assertEquals(hl.getFormat(), HistoryLog.Format.BINARY);
+            softAssert.assertTrue(hl.contains("c"), "c should be in binary log");
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        finally {
+            new File(binaryPath).delete();
+            new File(textPath).delete();
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testMembershipFilter() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 1000, false).enableFilter(0.01);
+            for(int i = 0; i < 1500; i++) {
+                hl.add("entry" + i);
+            }
+            hl.remove("entry1200");
+            FilterStatistics before = hl.getFilterStatistics();
+            for(int i = 0; i < 1500; i++) {
+                boolean expected = i >= 500 && i != 1200;
+                softAssert.assertEquals(hl.contains("entry" + i), expected, "entry" + i);
+            }
+            for(int i = 0; i < 10000; i++) {
+                hl.contains("missing" + i);
+            }
+            FilterStatistics stats = hl.getFilterStatistics();
+            softAssert.assertEquals(stats.getChecks() - before.getChecks(), 11500);
+            softAssert.assertEquals(stats.getHits() - before.getHits(), 999);
+            softAssert.assertTrue(stats.getFalsePositiveRate() < 0.05, "false positive rate " + stats);
+
+            hl.setFormat(HistoryLog.Format.BINARY).save();
+            hl = new HistoryLog(testDir, testFileName, 1000, false).enableFilter(0.01);
+            softAssert.assertTrue(hl.contains("entry1499"), "lookup through filter before load");
+            softAssert.assertFalse(hl.contains("entry1200"), "removed entry");
+            hl.add("new1");
+            hl.add("new2"); // 999 entries after the removal, only this add evicts
+            softAssert.assertFalse(hl.contains("entry500"), "evicted after load");
+            softAssert.assertTrue(hl.contains("entry501"));
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testCompositeKeys() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 100, true).enableFilter(0.01);
+            long[] values = {0, 7, -7, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE};
+            for(long value : values) {
+                hl.add("id", Long.toString(value));
+            }
+            hl.add("show", "-01" + 42 + "x");
+            for(long value : values) {
+                softAssert.assertTrue(hl.contains("id", value), "id" + value);
+                softAssert.assertTrue(hl.isInHistory("i", "d" + value), "split i/d" + value);
+            }
+            softAssert.assertTrue(hl.contains("id", 7), "int overload");
+            softAssert.assertFalse(hl.contains("id", 70), "int overload");
+            softAssert.assertTrue(hl.contains("show", "-0", 1, 42L, 'x'), "mixed modifiers");
+            softAssert.assertFalse(hl.contains("show", "-0", 1, 42L), "prefix only");
+            softAssert.assertFalse(hl.contains("id", "-"), "partial number");
+
+            softAssert.assertTrue(hl.remove("id", Long.MIN_VALUE), "remove long");
+            softAssert.assertFalse(hl.contains("id" + Long.MIN_VALUE), "removed");
+            softAssert.assertTrue(hl.remove("id", -7), "remove int");
+            softAssert.assertFalse(hl.remove("id", -7), "already removed");
+            softAssert.assertEquals(hl.getSavedList().size(), 5);
+
+            hl.add("grade", "A");
+            hl.add("grade", "66"); // code of 'B', which must not match
+            softAssert.assertTrue(hl.contains("grade", 'A'), "char appends the character");
+            softAssert.assertTrue(hl.isInHistory("grade", 'A'), "char appends the character");
+            softAssert.assertFalse(hl.isInHistory("grade", 'B'), "not the char code");
+            softAssert.assertFalse(hl.remove("grade", 'B'), "not the char code");
+            softAssert.assertTrue(hl.remove("grade", 'A'), "remove char");
+            softAssert.assertTrue(hl.contains("grade66"));
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testLruEviction() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 3, false).setEvictionPolicy(EvictionPolicy.lru());
+            hl.add("a");
+            hl.add("b");
+            hl.add("c");
+            softAssert.assertTrue(hl.contains("a")); // a is now most recent
+            hl.add("d"); // evicts b
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("c", "a", "d"));
+            hl.save();
+
+            hl = new HistoryLog(testDir, testFileName, 3, false).setEvictionPolicy(EvictionPolicy.lru());
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("c", "a", "d"));
+            hl.contains("c");
+            hl.add("e"); // evicts a
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("d", "c", "e"));
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testLruWithDups() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 4, true).setEvictionPolicy(EvictionPolicy.lru());
+            hl.add("a");
+            hl.add("b");
+            hl.add("a");
+            hl.add("c");
+            hl.contains("a"); // oldest a moves to the end
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("b", "a", "c", "a"));
+            softAssert.assertTrue(hl.remove("a"), "remove oldest a");
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("b", "c", "a"));
+            hl.add("d");
+            hl.add("e"); // evicts b
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("c", "a", "d", "e"));
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testTimeToLive() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            EvictionPolicy policy = EvictionPolicy.fifo().setTimeToLive(600, TimeUnit.MILLISECONDS);
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 10, false).setEvictionPolicy(policy);
+            hl.add("old");
+            Thread.sleep(400);
+            hl.add("new");
+            hl.save();
+            softAssert.assertTrue(new File(filePath + ".meta").exists(), "timestamps should be saved");
+
+            hl = new HistoryLog(testDir, testFileName, 10, false).setEvictionPolicy(policy);
+            softAssert.assertTrue(hl.contains("old"), "old should not have expired yet");
+            Thread.sleep(300);
+            softAssert.assertFalse(hl.contains("old"), "old should expire with its saved time");
+            softAssert.assertTrue(hl.contains("new"), "new should not have expired yet");
+            Thread.sleep(400);
+            softAssert.assertEquals(hl.getSavedList().size(), 0);
+        }
+        catch (IOException | InterruptedException e) {
+            softAssert.fail(e.toString());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testMaxBytes() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 100, false)
+                .setEvictionPolicy(EvictionPolicy.fifo().setMaxBytes(10));
+            hl.add("aaaa");
+            hl.add("bbbb");
+            hl.add("\u00e9\u00e9"); // 4 bytes in UTF-8, evicts aaaa
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("bbbb", "\u00e9\u00e9"));
+            hl.remove("bbbb");
+            hl.add("cccccc");
+            softAssert.assertEquals(hl.getSavedList(), Arrays.asList("\u00e9\u00e9", "cccccc"));
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testQueries() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            String[] names = {"show.s01e01", "show.s01e02", "movie.2019", "show.s02e01", "documentary", "movie.2020"};
+            HistoryLog scan = new HistoryLog(testDir, testFileName, 5, true);
+            HistoryLog indexed = new HistoryLog(testDir, testFileName, 5, true).enableQueryIndex();
+            for(HistoryLog hl : new HistoryLog[] {scan, indexed}) {
+                for(String name : names) {
+                    hl.add(name); // evicts show.s01e01
+                }
+                hl.add("movie.2020");
+                hl.remove("movie.2020");
+            }
+            softAssert.assertEquals(indexed.findByPrefix("show.", 10).collect(Collectors.toList()),
+                Arrays.asList("show.s02e01"), "s01e02 evicted by the dup add");
+            softAssert.assertEquals(indexed.findByPrefix("movie", 10).collect(Collectors.toList()),
+                Arrays.asList("movie.2019", "movie.2020"));
+            softAssert.assertEquals(indexed.findByPrefix("m", 1).count(), 1L, "limit");
+            softAssert.assertEquals(new TreeSet<>(indexed.findContaining("20", 10).collect(Collectors.toList())),
+                new TreeSet<>(Arrays.asList("movie.2019", "movie.2020")), "short token");
+            softAssert.assertEquals(indexed.findContaining("umenta", 10).collect(Collectors.toList()),
+                Arrays.asList("documentary"));
+            softAssert.assertEquals(indexed.findContaining("e01", 10).collect(Collectors.toList()),
+                Arrays.asList("show.s02e01"));
+            softAssert.assertEquals(indexed.findContaining("zzz", 10).count(), 0L);
+
+            for(String query : new String[] {"show", "movie", "d", "x"}) {
+                softAssert.assertEquals(new TreeSet<>(indexed.findByPrefix(query, 10).collect(Collectors.toList())),
+                    new TreeSet<>(scan.findByPrefix(query, 10).collect(Collectors.toList())), "prefix " + query);
+            }
+            for(String query : new String[] {"o", "ovi", "s0", ".20", "2020"}) {
+                softAssert.assertEquals(new TreeSet<>(indexed.findContaining(query, 10).collect(Collectors.toList())),
+                    new TreeSet<>(scan.findContaining(query, 10).collect(Collectors.toList())), "substring " + query);
+            }
+
+            for(HistoryLog hl : new HistoryLog[] {scan, indexed}) {
+                Stream<String> shows = hl.findByPrefix("show", 10);
+                Stream<String> movies = hl.findContaining("ovie", 10);
+                hl.add("show.s02e02"); // changes the log before the streams are consumed
+                hl.add("movie.2021");
+                softAssert.assertEquals(shows.collect(Collectors.toList()), Arrays.asList("show.s02e01"), "snapshot");
+                softAssert.assertEquals(movies.count(), 2L, "snapshot");
+            }
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testStreamFile() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName, 100, true);
+            for(int i = 0; i < 50; i++) {
+                hl.add("entry" + i, i % 2 == 0 ? ".even" : ".odd");
+            }
+            hl.add("\u00e9" + new String(new char[300]).replace('\0', 'x')); // longer than initial buffer
+            for(HistoryLog.Format format : HistoryLog.Format.values()) {
+                hl.setFormat(format).save();
+                try (Stream<String> stream = HistoryLog.streamFile(filePath)) {
+                    softAssert.assertEquals(stream.collect(Collectors.toList()), hl.getSavedList(), format.toString());
+                }
+                try (Stream<String> stream = HistoryLog.streamFile(filePath)) {
+                    softAssert.assertEquals(stream.filter(entry -> entry.endsWith(".even")).count(), 25L, format + " filter");
+                }
+                try (Stream<String> stream = HistoryLog.streamFile(filePath)) {
+                    softAssert.assertEquals(stream.findFirst().orElse(null), "entry0.even", format + " short circuit");
+                }
+            }
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testOpenLazily() {
+        SoftAssert softAssert = new SoftAssert();
+        try {
+            HistoryLog hl = new HistoryLog(testDir, testFileName);
+            hl.add("a");
+            hl.add("b");
+            hl.save();
+
+            HistoryLog lazy = HistoryLog.openLazily(testDir, testFileName, 10, false);
+            new File(filePath).delete();
+            lazy.save(); // unopened log is not written
+            softAssert.assertFalse(new File(filePath).exists(), "save before first use");
+
+            hl.save();
+            lazy = HistoryLog.openLazily(testDir, testFileName, 10, false).enableFilter(0.01);
+            softAssert.assertTrue(lazy.isInHistory("b"), "read on first check");
+            softAssert.assertFalse(lazy.isInHistory("c"));
+            lazy.add("c");
+            softAssert.assertEquals(lazy.getSavedList(), Arrays.asList("a", "b", "c"));
+
+            hl.setFormat(HistoryLog.Format.BINARY).save();
+            lazy = HistoryLog.openLazily(testDir, testFileName, 10, false);
+            softAssert.assertTrue(lazy.isInHistory("a"), "mapped binary log");
+            softAssert.assertEquals(lazy.getFormat(), HistoryLog.Format.BINARY);
+
+            lazy = HistoryLog.openLazily(testDir, testFileName, 10, false).setFormat(HistoryLog.Format.TEXT)
+                .setEvictionPolicy(EvictionPolicy.fifo().setMaxBytes(2)).enableQueryIndex();
+            hl.add("dd");
+            hl.save(); // written after the settings, so they did not read the log
+            softAssert.assertEquals(lazy.findByPrefix("d", 10).collect(Collectors.toList()), Arrays.asList("dd"), "deferred index");
+            softAssert.assertEquals(lazy.getSavedList(), Arrays.asList("dd"), "deferred byte cap");
+            softAssert.assertEquals(lazy.getFormat(), HistoryLog.Format.TEXT, "deferred format");
+        }
+        catch (IOException e) {
+            softAssert.fail(e.getMessage());
+        }
+        softAssert.assertAll();
+    }
 }
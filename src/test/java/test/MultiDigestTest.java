@@ -0,0 +1,112 @@
+package test;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.FileUtils;
+import org.tonyhsu17.utilities.checksum.DigestResult;
+import org.tonyhsu17.utilities.checksum.MultiDigest;
+import org.tonyhsu17.utilities.checksum.MultiDigest.Algorithm;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+
+
+/**
+ * Unit Tests for {@link MultiDigest}
+ *
+ * @author Tony Hsu
+ *
+ */
+public class MultiDigestTest {
+    private static final String testDir = "testFolder";
+    private static final File checkFile = new File(testDir, "digestCheck.txt");
+    private static final File randomFile = new File(testDir, "digestRandom.bin");
+    private byte[] randomBytes;
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() throws IOException {
+        new File(testDir).mkdirs();
+        write(checkFile, "123456789".getBytes(StandardCharsets.US_ASCII));
+        randomBytes = new byte[1024 * 1024 + 333];
+        new Random(5).nextBytes(randomBytes);
+        write(randomFile, randomBytes);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() {
+        checkFile.delete();
+        randomFile.delete();
+        new File(testDir).deleteOnExit();
+    }
+
+    @Test
+    public void testKnownValues() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        try (MultiDigest md = new MultiDigest(Algorithm.CRC32, Algorithm.ADLER32, Algorithm.MD5, Algorithm.SHA_256)) {
+            DigestResult result = md.digest(checkFile.toPath());
+            softAssert.assertEquals(result.getHex(Algorithm.CRC32), "cbf43926");
+            softAssert.assertEquals(result.getValue(Algorithm.CRC32), 0xcbf43926L);
+            softAssert.assertEquals(result.getHex(Algorithm.ADLER32), "091e01de");
+            softAssert.assertEquals(result.getHex(Algorithm.MD5), "25f9e794323b453885f5181f1b624d0b");
+            softAssert.assertEquals(result.getHex(Algorithm.SHA_256),
+                "15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225");
+            softAssert.assertEquals(result.getSize(), 9L);
+        }
+        try (MultiDigest md = new MultiDigest(Algorithm.CRC32C)) {
+            softAssert.assertEquals(md.digest(checkFile.toPath()).getHex(Algorithm.CRC32C), "e3069283");
+        }
+        catch (UnsupportedOperationException e) {
+            // running on Java 8
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testPipelined() throws IOException, NoSuchAlgorithmException {
+        Adler32 adler = new Adler32();
+        adler.update(randomBytes, 0, randomBytes.length);
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        sha.update(randomBytes);
+        byte[] expectedSha = sha.digest();
+
+        SoftAssert softAssert = new SoftAssert();
+        // small buffers so the file spans many chunks
+        try (MultiDigest md = new MultiDigest(Algorithm.CRC32, Algorithm.ADLER32, Algorithm.SHA_256).setBufferSize(10000)) {
+            for(int i = 0; i < 3; i++) {
+                DigestResult result = md.digest(randomFile.toPath());
+                softAssert.assertEquals(result.getHex(Algorithm.CRC32), FileUtils.getCRC32(randomFile));
+                softAssert.assertEquals(result.getValue(Algorithm.ADLER32), adler.getValue());
+                softAssert.assertEquals(result.getBytes(Algorithm.SHA_256), expectedSha);
+                softAssert.assertEquals(result.getSize(), (long)randomBytes.length);
+            }
+        }
+        softAssert.assertAll();
+    }
+
+    @Test(timeOut = 10000)
+    public void testNoAlgorithms() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        try (MultiDigest md = new MultiDigest().setBufferSize(1000)) {
+            // larger than the buffers in flight, used to wait forever for a free buffer
+            DigestResult result = md.digest(randomFile.toPath());
+            softAssert.assertTrue(result.getNames().isEmpty());
+            softAssert.assertEquals(result.getSize(), (long)randomBytes.length);
+        }
+        softAssert.assertAll();
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(data);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package test;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.SegmentedHistoryLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+
+
+/**
+ * Unit Tests for {@link SegmentedHistoryLog}
+ *
+ * @author Tony Hsu
+ *
+ */
+public class SegmentedHistoryLogTest {
+    private static final String testDir = "testFolder";
+    private static final String testFileName = "segmentedHistoryTestFile.txt";
+    private static final int SHARDS = 8;
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() {
+        new File(testDir).mkdirs();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() {
+        deleteShards();
+        new File(testDir).deleteOnExit();
+    }
+
+    @BeforeMethod(alwaysRun = true)
+    public void beforeMethod() {
+        deleteShards();
+    }
+
+    private void deleteShards() {
+        for(int i = 0; i < SHARDS; i++) {
+            new File(testDir + "/" + testFileName + "." + i).delete();
+            new File(testDir + "/" + testFileName + "." + i + ".journal").delete();
+            new File(testDir + "/" + testFileName + "." + i + ".journal.old").delete();
+            new File(testDir + "/" + testFileName + "." + i + ".new").delete();
+        }
+    }
+
+    @Test
+    public void testAddContainsRemove() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        SegmentedHistoryLog hl = new SegmentedHistoryLog(testDir, testFileName, SHARDS, 8000, false);
+        softAssert.assertEquals(hl.getLoadedShardCount(), 0, "shards load lazily");
+        for(int i = 0; i < 1000; i++) {
+            hl.add("entry", Integer.toString(i));
+        }
+        softAssert.assertTrue(hl.contains("entry", 999L), "long modifier hashes like its string");
+        softAssert.assertTrue(hl.contains("entry5"), "unsplit key");
+        softAssert.assertTrue(hl.contains("entry", '7'), "char appends the character");
+        softAssert.assertFalse(hl.contains("entry", '-'), "not the char code, entry45 exists");
+        softAssert.assertTrue(hl.remove("entry", 5), "remove");
+        softAssert.assertFalse(hl.contains("entry5"), "removed");
+        softAssert.assertEquals(hl.getSavedList().size(), 999);
+        hl.save();
+
+        hl = new SegmentedHistoryLog(testDir, testFileName, SHARDS, 8000, false);
+        Set<String> reloaded = new HashSet<>(hl.getSavedList());
+        softAssert.assertEquals(reloaded.size(), 999);
+        softAssert.assertTrue(reloaded.contains("entry998"));
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testColdShardsUnloaded() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        SegmentedHistoryLog hl = new SegmentedHistoryLog(testDir, testFileName, SHARDS, 8000, false)
+            .setMaxLoadedShards(2).setJournaled(true);
+        for(int i = 0; i < 500; i++) {
+            hl.add("entry" + i);
+            softAssert.assertTrue(hl.getLoadedShardCount() <= 2, "loaded shards " + hl.getLoadedShardCount());
+        }
+        for(int i = 0; i < 500; i++) {
+            softAssert.assertTrue(hl.contains("entry" + i), "entry" + i + " should survive unloading");
+        }
+        softAssert.assertFalse(hl.contains("missing"));
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testReloadDuringCompaction() throws IOException {
+        SegmentedHistoryLog hl = new SegmentedHistoryLog(testDir, testFileName, 2, 100, false)
+            .setJournaled(true).setMaxLoadedShards(1);
+        for(int i = 0; i < 3000; i++) {
+            hl.add("entry" + i); // alternates shards, each unload may start a compaction
+        }
+        hl.save();
+        SoftAssert softAssert = new SoftAssert();
+        for(int i = 2900; i < 3000; i++) {
+            softAssert.assertTrue(hl.contains("entry" + i), "entry" + i + " lost across reloads");
+        }
+        hl = new SegmentedHistoryLog(testDir, testFileName, 2, 100, false).setJournaled(true);
+        softAssert.assertEquals(hl.getSavedList().size(), 100);
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testMemoryThresholdOptIn() {
+        SegmentedHistoryLog hl = new SegmentedHistoryLog(testDir, testFileName, SHARDS, 8000, false);
+        for(int i = 0; i < 500; i++) {
+            hl.add("entry" + i);
+        }
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertEquals(hl.getLoadedShardCount(), SHARDS, "no shard unloaded without a threshold");
+        hl.setMemoryThreshold(0);
+        hl.add("entry500");
+        softAssert.assertTrue(hl.getLoadedShardCount() < SHARDS, "threshold unloads a cold shard");
+        softAssert.assertTrue(hl.contains("entry0"));
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testUnloadDuringSave() throws Exception {
+        SegmentedHistoryLog hl = new SegmentedHistoryLog(testDir, testFileName, SHARDS, 80000, false)
+            .setMaxLoadedShards(2);
+        Thread saver = new Thread(() -> {
+            try {
+                for(int i = 0; i < 50; i++) {
+                    hl.save();
+                }
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        saver.start();
+        for(int i = 0; i < 5000; i++) {
+            hl.add("entry" + i);
+        }
+        saver.join();
+        SoftAssert softAssert = new SoftAssert();
+        softAssert.assertTrue(hl.getLoadedShardCount() <= 2, "loaded shards " + hl.getLoadedShardCount());
+        for(int i = 0; i < 5000; i++) {
+            softAssert.assertTrue(hl.contains("entry" + i), "entry" + i + " lost while unloading");
+        }
+        softAssert.assertAll();
+    }
+}
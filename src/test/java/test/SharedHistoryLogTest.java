@@ -0,0 +1,116 @@
+package test;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.testng.asserts.SoftAssert;
+import org.tonyhsu17.utilities.SharedHistoryLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+
+
+/**
+ * Unit Tests for {@link SharedHistoryLog}. Two instances on one file stand in for two processes.
+ *
+ * @author Tony Hsu
+ *
+ */
+public class SharedHistoryLogTest {
+    private static final String testDir = "testFolder";
+    private static final String testFileName = "sharedHistoryTestFile.txt";
+    private static final String filePath = testDir + "/" + testFileName;
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() {
+        new File(testDir).mkdirs();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() {
+        deleteLogFiles();
+        new File(testDir).deleteOnExit();
+    }
+
+    @BeforeMethod(alwaysRun = true)
+    public void beforeMethod() {
+        deleteLogFiles();
+    }
+
+    private void deleteLogFiles() {
+        new File(filePath).delete();
+        new File(filePath + ".lock").delete();
+        new File(filePath + ".tmp").delete();
+    }
+
+    @Test
+    public void testChangesVisibleAcrossInstances() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        try (SharedHistoryLog a = new SharedHistoryLog(testDir, testFileName, 3, false);
+             SharedHistoryLog b = new SharedHistoryLog(testDir, testFileName, 3, false)) {
+            a.add("x");
+            softAssert.assertTrue(b.contains("x"), "b should see a's add");
+            b.add("x");
+            b.add("y");
+            softAssert.assertEquals(a.getSavedList(), Arrays.asList("x", "y"), "dup add from b is dropped");
+            softAssert.assertTrue(b.remove("x"));
+            softAssert.assertFalse(a.contains("x"), "a should see b's remove");
+            a.add("1");
+            b.add("2");
+            a.add("3"); // evicts y in both
+            softAssert.assertEquals(b.getSavedList(), Arrays.asList("1", "2", "3"));
+            softAssert.assertEquals(a.getSavedList(), b.getSavedList());
+        }
+        try (SharedHistoryLog c = new SharedHistoryLog(testDir, testFileName, 3, false)) {
+            softAssert.assertEquals(c.getSavedList(), Arrays.asList("1", "2", "3"));
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testConcurrentWritersAndCompaction() throws Exception {
+        SoftAssert softAssert = new SoftAssert();
+        try (SharedHistoryLog a = new SharedHistoryLog(testDir, testFileName, 10000, false).setCompactionThreshold(100);
+             SharedHistoryLog b = new SharedHistoryLog(testDir, testFileName, 10000, false).setCompactionThreshold(100)) {
+            Thread writer = new Thread(() -> {
+                for(int i = 0; i < 500; i++) {
+                    a.add("k" + i);
+                    a.remove("k" + (i - 1));
+                }
+            });
+            writer.start();
+            for(int i = 0; i < 500; i++) {
+                b.add("k" + i);
+                b.add("b" + i);
+            }
+            writer.join();
+            List<String> fromA = a.getSavedList();
+            softAssert.assertEquals(fromA, b.getSavedList(), "instances converge");
+            softAssert.assertEquals(new HashSet<>(fromA).size(), fromA.size(), "no duplicate adds");
+            softAssert.assertTrue(fromA.containsAll(Arrays.asList("b0", "b499", "k499")), "no lost updates");
+            softAssert.assertTrue(Files.readAllLines(Paths.get(filePath)).size() <= fromA.size() + 100 + 1, "file compacted");
+        }
+        softAssert.assertAll();
+    }
+
+    @Test
+    public void testTornRecordIgnored() throws IOException {
+        SoftAssert softAssert = new SoftAssert();
+        try (SharedHistoryLog a = new SharedHistoryLog(testDir, testFileName, 10, false)) {
+            a.add("x");
+            Files.write(Paths.get(filePath), "+parti".getBytes(), StandardOpenOption.APPEND);
+            softAssert.assertFalse(a.contains("parti"), "partial record not applied");
+            a.add("y");
+            softAssert.assertEquals(Files.readAllLines(Paths.get(filePath)), Arrays.asList("+x", "+y"));
+        }
+        softAssert.assertAll();
+    }
+}